@@ -0,0 +1,78 @@
+package se.haleby.rps.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.openjdk.jmh.annotations.*;
+import se.haleby.rps.domain.event.GameCreated;
+import se.haleby.rps.domain.event.MoveMade;
+import se.haleby.rps.infrastructure.serialization.BinaryEventSerializer;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static se.haleby.rps.domain.model.Move.ROCK;
+
+/**
+ * Serializing and deserializing events with the compact binary serializer compared to XStream, which is what Axon uses
+ * by default, and Jackson. The size of a serialized event is printed when each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventSerializationBenchmark {
+
+    public enum SerializerType {
+        BINARY, XSTREAM, JACKSON
+    }
+
+    @Param({"BINARY", "XSTREAM", "JACKSON"})
+    SerializerType serializerType;
+
+    @Param({"MoveMade", "GameCreated"})
+    String eventType;
+
+    private Serializer serializer;
+    private Object event;
+    private SerializedObject<byte[]> serialized;
+
+    @Setup(Level.Trial)
+    public void serializeEvent() {
+        serializer = createSerializer(serializerType);
+        String gameId = UUID.randomUUID().toString();
+        event = "MoveMade".equals(eventType) ?
+                MoveMade.builder().gameId(gameId).round(1).player("player1").move(ROCK).build() :
+                GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build();
+        serialized = serializer.serialize(event, byte[].class);
+        System.out.printf("%n%s %s: %d bytes%n", serializerType, eventType, serialized.getData().length);
+    }
+
+    @Benchmark
+    public SerializedObject<byte[]> serialize() {
+        return serializer.serialize(event, byte[].class);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+
+    private static Serializer createSerializer(SerializerType serializerType) {
+        switch (serializerType) {
+            case BINARY:
+                return new BinaryEventSerializer(new XStreamSerializer());
+            case JACKSON:
+                ObjectMapper objectMapper = new ObjectMapper();
+                // Some events are created by private constructors behind static factory methods
+                objectMapper.setVisibility(PropertyAccessor.CREATOR, Visibility.ANY);
+                return new JacksonSerializer(objectMapper);
+            default:
+                return new XStreamSerializer();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package se.haleby.rps.benchmark;
+
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import se.haleby.rps.GameServer.EventStoreType;
+import se.haleby.rps.domain.event.MoveMade;
+import se.haleby.rps.infrastructure.eventstore.FileEventStorageEngine;
+import se.haleby.rps.infrastructure.eventstore.JdbcEventStorageEngine;
+import se.haleby.rps.infrastructure.serialization.BinaryEventSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static se.haleby.rps.domain.model.Move.ROCK;
+
+/**
+ * Appending events and loading aggregates with each event storage engine supported by the game server, using the
+ * binary event serializer. The file and JDBC engines store their events in a temporary directory.
+ */
+@State(Scope.Benchmark)
+public class EventStorageEngineBenchmark {
+
+    @Param({"MEMORY", "FILE", "JDBC"})
+    EventStoreType eventStore;
+
+    @Param({"10", "100"})
+    int eventsPerGame;
+
+    private Path directory;
+    private EventStorageEngine engine;
+    private String loadedGameId;
+
+    @Setup(Level.Trial)
+    public void openEngine() throws IOException {
+        directory = Files.createTempDirectory("events");
+        BinaryEventSerializer serializer = new BinaryEventSerializer(new XStreamSerializer());
+        switch (eventStore) {
+            case FILE:
+                engine = new FileEventStorageEngine(directory, serializer, FileEventStorageEngine.DEFAULT_SEGMENT_SIZE, false);
+                break;
+            case JDBC:
+                engine = JdbcEventStorageEngine.h2("jdbc:h2:file:" + directory.resolve("events"), 16, serializer);
+                break;
+            default:
+                engine = new InMemoryEventStorageEngine();
+        }
+        loadedGameId = UUID.randomUUID().toString();
+        engine.appendEvents(moves(loadedGameId, 0, eventsPerGame));
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEngine() throws Exception {
+        if (engine instanceof AutoCloseable) {
+            ((AutoCloseable) engine).close();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * A game appending its events one command at a time, as when moves are made one by one.
+     */
+    @State(Scope.Thread)
+    public static class AppendingGame {
+        String gameId = UUID.randomUUID().toString();
+        long sequenceNumber;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public void appendEvent(AppendingGame game) {
+        engine.appendEvents(moves(game.gameId, game.sequenceNumber++, 1));
+    }
+
+    /**
+     * Appending the events of a whole game at once, which the JDBC engine inserts as a single batch.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void appendGame() {
+        engine.appendEvents(moves(UUID.randomUUID().toString(), 0, eventsPerGame));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public void loadGame(Blackhole blackhole) {
+        engine.readEvents(loadedGameId, 0).asStream().forEach(blackhole::consume);
+    }
+
+    private static List<DomainEventMessage<?>> moves(String gameId, long firstSequenceNumber, int count) {
+        List<DomainEventMessage<?>> moves = new ArrayList<>(count);
+        for (long sequenceNumber = firstSequenceNumber; sequenceNumber < firstSequenceNumber + count; sequenceNumber++) {
+            moves.add(new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, MoveMade.builder().gameId(gameId).player("player1").round(1).move(ROCK).build()));
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,155 @@
+package se.haleby.rps.benchmark;
+
+import org.axonframework.commandhandling.disruptor.DisruptorCommandBus;
+import org.axonframework.commandhandling.disruptor.DisruptorConfiguration;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.caching.WeakReferenceCache;
+import org.axonframework.config.AggregateConfigurer;
+import org.axonframework.config.Configuration;
+import org.axonframework.config.Configurer;
+import org.axonframework.config.DefaultConfigurer;
+import org.axonframework.eventsourcing.AggregateSnapshotter;
+import org.axonframework.eventsourcing.EventCountSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.NoSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.SnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.openjdk.jmh.annotations.*;
+import se.haleby.rps.GameServer.CommandBusType;
+import se.haleby.rps.domain.command.CreateGame;
+import se.haleby.rps.domain.command.MakeMove;
+import se.haleby.rps.domain.model.Game;
+import se.haleby.rps.domain.model.Move;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static se.haleby.rps.domain.model.Move.*;
+
+/**
+ * Command handling of the Game aggregate through the Axon command gateway, with an in-memory event store and either
+ * command bus supported by the game server.
+ */
+public class GameCommandBenchmark {
+    private static final String PLAYER_1 = "player1";
+    private static final String PLAYER_2 = "player2";
+
+    @State(Scope.Benchmark)
+    public static class Axon {
+        @Param({"0", "100"})
+        int snapshotThreshold;
+
+        @Param({"SIMPLE", "DISRUPTOR"})
+        CommandBusType commandBus;
+
+        Configuration configuration;
+        CommandGateway commandGateway;
+
+        @Setup(Level.Trial)
+        public void start() {
+            Function<Configuration, SnapshotTriggerDefinition> snapshotTrigger = c -> snapshotThreshold > 0 ?
+                    new EventCountSnapshotTriggerDefinition(new AggregateSnapshotter(c.eventStore(), new GenericAggregateFactory<>(Game.class)), snapshotThreshold) :
+                    NoSnapshotTriggerDefinition.INSTANCE;
+            AggregateConfigurer<Game> gameConfigurer = AggregateConfigurer.defaultConfiguration(Game.class);
+            Configurer configurer = DefaultConfigurer.defaultConfiguration();
+            if (commandBus == CommandBusType.DISRUPTOR) {
+                configurer.configureCommandBus(c -> new DisruptorCommandBus(new DisruptorConfiguration()
+                        .setInvokerThreadCount(2)
+                        .setPublisherThreadCount(2)
+                        .setCache(new WeakReferenceCache())));
+                gameConfigurer.configureRepository(c -> ((DisruptorCommandBus) c.commandBus()).createRepository(c.eventStore(), new GenericAggregateFactory<>(Game.class), snapshotTrigger.apply(c), c.parameterResolverFactory()));
+            } else {
+                gameConfigurer.configureSnapshotTrigger(snapshotTrigger);
+            }
+            configuration = configurer
+                    .configureAggregate(gameConfigurer)
+                    .configureEventStore(c -> new EmbeddedEventStore(new InMemoryEventStorageEngine()))
+                    .buildConfiguration();
+            configuration.start();
+            commandGateway = configuration.commandGateway();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            if (configuration.commandBus() instanceof DisruptorCommandBus) {
+                ((DisruptorCommandBus) configuration.commandBus()).stop();
+            }
+            configuration.shutdown();
+        }
+    }
+
+    /**
+     * A game where {@link #roundsPlayed} tied rounds have been played before each measured batch of rounds.
+     */
+    @State(Scope.Thread)
+    public static class LongGame {
+        @Param({"10", "100", "1000"})
+        int roundsPlayed;
+
+        String gameId;
+
+        @Setup(Level.Iteration)
+        public void playRounds(Axon axon) {
+            gameId = UUID.randomUUID().toString();
+            createGame(axon.commandGateway, gameId, Integer.MAX_VALUE);
+            for (int round = 0; round < roundsPlayed; round++) {
+                playRound(axon.commandGateway, gameId, ROCK, ROCK);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void createGame(Axon axon) {
+        createGame(axon.commandGateway, UUID.randomUUID().toString(), 3);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void playFullGame(Axon axon) {
+        String gameId = UUID.randomUUID().toString();
+        createGame(axon.commandGateway, gameId, 3);
+        playRound(axon.commandGateway, gameId, ROCK, ROCK);
+        playRound(axon.commandGateway, gameId, ROCK, SCISSORS);
+        playRound(axon.commandGateway, gameId, PAPER, ROCK);
+    }
+
+    /**
+     * Games played concurrently by several threads, where the simple command bus handles each command on the sending
+     * thread while the disruptor command bus hands them over to its own threads, keeping the commands of a game in order.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public void playFullGamesConcurrently(Axon axon) {
+        playFullGame(axon);
+    }
+
+    /**
+     * The time it takes to play ten rounds of a game that has already been going on for {@link LongGame#roundsPlayed}
+     * rounds, i.e. how the cost of a move grows with the number of events to replay.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20, batchSize = 10)
+    @Measurement(iterations = 20, batchSize = 10)
+    public void makeMovesInLongGame(Axon axon, LongGame game) {
+        playRound(axon.commandGateway, game.gameId, ROCK, ROCK);
+    }
+
+    private static void createGame(CommandGateway commandGateway, String gameId, int rounds) {
+        commandGateway.sendAndWait(CreateGame.builder().gameId(gameId).creator(PLAYER_1).rounds(rounds).creationDate(new Date()).build());
+    }
+
+    private static void playRound(CommandGateway commandGateway, String gameId, Move player1Move, Move player2Move) {
+        commandGateway.sendAndWait(MakeMove.builder().gameId(gameId).player(PLAYER_1).move(player1Move).build());
+        commandGateway.sendAndWait(MakeMove.builder().gameId(gameId).player(PLAYER_2).move(player2Move).build());
+    }
+}
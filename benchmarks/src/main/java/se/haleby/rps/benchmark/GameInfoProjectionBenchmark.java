@@ -0,0 +1,92 @@
+package se.haleby.rps.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import se.haleby.rps.domain.event.*;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.projection.gameinfo.GameInfo;
+import se.haleby.rps.projection.gameinfo.GameInfoProjection;
+import se.haleby.rps.projection.gameinfo.GameInfoState;
+import se.haleby.rps.projection.gameinfo.GamePage;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static se.haleby.rps.projection.gameinfo.GameInfoProjection.Predicates.all;
+
+/**
+ * Applying events to, and querying, a {@link GameInfoProjection} that already contains {@link #games} games of which
+ * one percent are joinable and the rest have ended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GameInfoProjectionBenchmark {
+
+    @Param({"1000", "100000"})
+    int games;
+
+    private GameInfoProjection projection;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        projection = new GameInfoProjection();
+        for (int i = 0; i < games; i++) {
+            String gameId = UUID.randomUUID().toString();
+            if (i % 100 == 0) {
+                projection.when(GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build(), 0);
+            } else {
+                playGame(projection, gameId);
+            }
+        }
+    }
+
+    @Benchmark
+    public GameInfoProjection applyEventsOfFullGame() {
+        playGame(projection, UUID.randomUUID().toString());
+        return projection;
+    }
+
+    @Benchmark
+    public List<GameInfo> findJoinableByPredicate() {
+        return projection.find(GameInfoProjection.Predicates.hasState(GameInfoState.JOINABLE));
+    }
+
+    @Benchmark
+    public List<GameInfo> findJoinableByState() {
+        return projection.findByState(Collections.singleton(GameInfoState.JOINABLE));
+    }
+
+    @Benchmark
+    public List<GameInfo> findAll() {
+        return projection.find(all());
+    }
+
+    @Benchmark
+    public GamePage findFirstPage() {
+        return projection.findPage(EnumSet.allOf(GameInfoState.class), null, 50);
+    }
+
+    @Benchmark
+    public void findById(Blackhole blackhole) {
+        blackhole.consume(projection.findById("unknown"));
+    }
+
+    private static void playGame(GameInfoProjection projection, String gameId) {
+        long sequenceNumber = 0;
+        projection.when(GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build(), sequenceNumber++);
+        projection.when(RoundStarted.builder().gameId(gameId).roundNumber(1).build(), sequenceNumber++);
+        projection.when(FirstPlayerJoinedGame.builder().gameId(gameId).player("player1").build(), sequenceNumber++);
+        projection.when(MoveMade.builder().gameId(gameId).round(1).player("player1").move(Move.ROCK).build(), sequenceNumber++);
+        projection.when(SecondPlayerJoinedGame.builder().gameId(gameId).player("player2").build(), sequenceNumber++);
+        projection.when(MoveMade.builder().gameId(gameId).round(1).player("player2").move(Move.SCISSORS).build(), sequenceNumber++);
+        projection.when(RoundWon.builder().gameId(gameId).roundNumber(1).winner("player1").build(), sequenceNumber++);
+        projection.when(RoundEnded.builder().gameId(gameId).roundNumber(1).build(), sequenceNumber++);
+        projection.when(GameWon.builder().gameId(gameId).winner("player1").build(), sequenceNumber++);
+        projection.when(GameEnded.withGameId(gameId), sequenceNumber);
+    }
+}
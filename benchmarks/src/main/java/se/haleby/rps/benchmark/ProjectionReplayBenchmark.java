@@ -0,0 +1,66 @@
+package se.haleby.rps.benchmark;
+
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.openjdk.jmh.annotations.*;
+import se.haleby.rps.domain.event.*;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.processor.ProjectionReplayer;
+import se.haleby.rps.infrastructure.processor.ProjectionReplayer.Replay;
+import se.haleby.rps.projection.gameinfo.GameInfoProjection;
+import se.haleby.rps.projection.playerstats.PlayerStatsProjection;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilding the game info and player statistics projections from the events of {@link #GAMES} games stored in memory,
+ * reported as events replayed per second for each number of replaying threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ProjectionReplayBenchmark.GAMES * ProjectionReplayBenchmark.EVENTS_PER_GAME)
+public class ProjectionReplayBenchmark {
+    static final int GAMES = 10_000;
+    static final int EVENTS_PER_GAME = 10;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    private InMemoryEventStorageEngine engine;
+
+    @Setup(Level.Trial)
+    public void storeGames() {
+        engine = new InMemoryEventStorageEngine();
+        List<DomainEventMessage<?>> events = new ArrayList<>(GAMES * EVENTS_PER_GAME);
+        for (int i = 0; i < GAMES; i++) {
+            String gameId = UUID.randomUUID().toString();
+            String player2 = "player" + (i % 100 + 2);
+            List<Object> game = new ArrayList<>(EVENTS_PER_GAME);
+            game.add(GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build());
+            game.add(RoundStarted.builder().gameId(gameId).roundNumber(1).build());
+            game.add(FirstPlayerJoinedGame.builder().gameId(gameId).player("player1").build());
+            game.add(MoveMade.builder().gameId(gameId).round(1).player("player1").move(Move.ROCK).build());
+            game.add(SecondPlayerJoinedGame.builder().gameId(gameId).player(player2).build());
+            game.add(MoveMade.builder().gameId(gameId).round(1).player(player2).move(Move.SCISSORS).build());
+            game.add(RoundWon.builder().gameId(gameId).roundNumber(1).winner("player1").build());
+            game.add(RoundEnded.builder().gameId(gameId).roundNumber(1).build());
+            game.add(GameWon.builder().gameId(gameId).winner("player1").build());
+            game.add(GameEnded.withGameId(gameId));
+            for (int sequenceNumber = 0; sequenceNumber < game.size(); sequenceNumber++) {
+                events.add(new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, game.get(sequenceNumber)));
+            }
+        }
+        engine.appendEvents(events);
+    }
+
+    @Benchmark
+    public Replay replay() {
+        return new ProjectionReplayer(engine, threads, ProjectionReplayer.DEFAULT_BATCH_SIZE).replay(new GameInfoProjection(), new PlayerStatsProjection());
+    }
+}
@@ -0,0 +1,63 @@
+package se.haleby.rps.domain.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playing a round and determining its outcome the way {@link Game} does when handling a move. Lives in the same package
+ * as {@link Round} since it's package private.
+ * <p>
+ * Run with {@code -prof gc} to verify that evaluating the outcome of a round doesn't allocate, i.e. that
+ * {@code gc.alloc.rate.norm} of {@link #determineOutcome(Blackhole)} is zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoundBenchmark {
+    private static final Move[] MOVES = Move.values();
+
+    private int moveIndex;
+    private Round[] playedRounds;
+    private int roundIndex;
+
+    @Setup(Level.Trial)
+    public void playAllCombinationsOfMoves() {
+        playedRounds = new Round[MOVES.length * MOVES.length];
+        int i = 0;
+        for (Move move1 : MOVES) {
+            for (Move move2 : MOVES) {
+                Round round = new Round(1);
+                round.play(Player.ONE, move1);
+                round.play(Player.TWO, move2);
+                playedRounds[i++] = round;
+            }
+        }
+    }
+
+    @Benchmark
+    public void playRoundAndDetermineWinner(Blackhole blackhole) {
+        Round round = new Round(1);
+        round.play(Player.ONE, nextMove());
+        blackhole.consume(round.isEnded());
+        round.play(Player.TWO, nextMove());
+        blackhole.consume(round.isEnded());
+        blackhole.consume(round.hasWinner());
+        blackhole.consume(round.winner());
+    }
+
+    @Benchmark
+    public void determineOutcome(Blackhole blackhole) {
+        Round round = playedRounds[roundIndex];
+        roundIndex = (roundIndex + 1) % playedRounds.length;
+        blackhole.consume(round.isEnded());
+        blackhole.consume(round.hasWinner());
+        blackhole.consume(round.winner());
+    }
+
+    private Move nextMove() {
+        moveIndex = (moveIndex + 1) % MOVES.length;
+        return MOVES[moveIndex];
+    }
+}
@@ -0,0 +1,65 @@
+package se.haleby.rps.port.http;
+
+import io.javalin.json.JavalinJson;
+import org.openjdk.jmh.annotations.*;
+import se.haleby.rps.projection.gameinfo.GameInfo;
+import se.haleby.rps.projection.gameinfo.GameInfoState;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Mapping games to {@link GameDTO}s and serializing them to JSON the way {@link GameApi} does. Lives in the same package
+ * as {@link GameDTO} since it's package private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GameDTOSerializationBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int games;
+
+    private List<GameInfo> gameInfos;
+    private GameJsonCache gameJsonCache;
+    private int gameIndex;
+
+    @Setup(Level.Trial)
+    public void createGames() {
+        gameInfos = IntStream.range(0, games)
+                .mapToObj(i -> GameInfo.builder().gameId(UUID.randomUUID().toString()).createdAt(new Date()).player1("player1").player2("player2").winner("player1").state(GameInfoState.ENDED).build())
+                .collect(Collectors.toList());
+        gameJsonCache = new GameJsonCache(games);
+    }
+
+    @Benchmark
+    public String serializeGames() {
+        return JavalinJson.toJson(gameInfos.stream().map(GameDTO::from).collect(Collectors.toList()));
+    }
+
+    /**
+     * Serializing a single game, as done for each GET of a game before its JSON was cached.
+     */
+    @Benchmark
+    public byte[] serializeGame() {
+        return JavalinJson.toJson(GameDTO.from(nextGame())).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getting the JSON of a single game from the cache, which only serializes a game the first time a version is read.
+     */
+    @Benchmark
+    public byte[] serializeCachedGame() {
+        return gameJsonCache.json(nextGame());
+    }
+
+    private GameInfo nextGame() {
+        gameIndex = (gameIndex + 1) % games;
+        return gameInfos.get(gameIndex);
+    }
+}
@@ -5,26 +5,92 @@ import com.beust.jcommander.Parameter;
 import io.javalin.staticfiles.Location;
 import lombok.Data;
 import lombok.experimental.Accessors;
+import org.axonframework.commandhandling.disruptor.DisruptorCommandBus;
+import org.axonframework.commandhandling.disruptor.DisruptorConfiguration;
+import org.axonframework.common.caching.Cache;
+import org.axonframework.common.caching.WeakReferenceCache;
+import org.axonframework.config.AggregateConfigurer;
 import org.axonframework.config.Configuration;
+import org.axonframework.config.Configurer;
 import org.axonframework.config.DefaultConfigurer;
 import org.axonframework.config.EventHandlingConfiguration;
+import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.eventsourcing.AggregateSnapshotter;
+import org.axonframework.eventsourcing.CachingEventSourcingRepository;
+import org.axonframework.eventsourcing.EventCountSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.GenericAggregateFactory;
+import org.axonframework.eventsourcing.NoSnapshotTriggerDefinition;
+import org.axonframework.eventsourcing.SnapshotTriggerDefinition;
 import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
 import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.axonframework.monitoring.NoOpMessageMonitor;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.xml.XStreamSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.haleby.rps.application.CommandDispatcher;
+import se.haleby.rps.application.ExecutorCommandDispatcher;
 import se.haleby.rps.application.GameApplicationService;
 import se.haleby.rps.domain.model.Game;
+import se.haleby.rps.infrastructure.cache.BoundedCache;
+import se.haleby.rps.infrastructure.cache.GameCacheEvictor;
+import se.haleby.rps.infrastructure.cluster.ClusterCommandDispatcher;
+import se.haleby.rps.infrastructure.cluster.ConsistentHash;
+import se.haleby.rps.infrastructure.cluster.HttpCommandSender;
+import se.haleby.rps.infrastructure.eventstore.FileEventStorageEngine;
+import se.haleby.rps.infrastructure.eventstore.JdbcEventStorageEngine;
+import se.haleby.rps.infrastructure.metrics.Metrics;
+import se.haleby.rps.infrastructure.metrics.TimingEventHandlerInterceptor;
+import se.haleby.rps.infrastructure.metrics.TimingSnapshotTriggerDefinition;
+import se.haleby.rps.infrastructure.processor.ProcessorLagMonitor;
+import se.haleby.rps.infrastructure.processor.ProjectionCheckpointer;
+import se.haleby.rps.infrastructure.processor.ProjectionReplayer;
+import se.haleby.rps.infrastructure.serialization.BinaryEventSerializer;
+import se.haleby.rps.infrastructure.tokenstore.FileTokenStore;
 import se.haleby.rps.port.http.GameApi;
 import se.haleby.rps.projection.gameinfo.GameInfoProjection;
+import se.haleby.rps.projection.gameinfo.GameInfoState;
+import se.haleby.rps.projection.gameinfo.RetentionPolicy;
+import se.haleby.rps.projection.playerstats.PlayerStatsProjection;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 public class GameServer {
     private static final Logger log = LoggerFactory.getLogger(GameServer.class);
+    private static final long LAG_LOG_INTERVAL_MILLIS = 10_000;
+    // Defaults of the embedded event store
+    private static final int EVENT_STORE_CACHED_EVENTS = 10_000;
+    private static final long EVENT_STORE_CLEANUP_DELAY_MILLIS = 10_000;
+    private static final long NO_EVENT = -1;
+    private static final List<String> PROJECTION_PROCESSING_GROUPS = Arrays.asList(GameInfoProjection.PROCESSING_GROUP, PlayerStatsProjection.PROCESSING_GROUP);
 
+    private final EventStorageEngine eventStorageEngine;
+    private final boolean ownsEventStorageEngine;
+    private final TokenStore tokenStore;
+    private final ProcessorLagMonitor projectionLagMonitor;
+    private final ProjectionCheckpointer gameInfoCheckpointer;
+    private final Metrics metrics = new Metrics();
+    private final GameInfoProjection gameInfoProjection;
+    private final PlayerStatsProjection playerStatsProjection = new PlayerStatsProjection();
     private final Configuration axon;
+    private final HttpCommandSender clusterCommandSender;
+    private final ExecutorCommandDispatcher asyncCommandDispatcher;
     private final GameApi gameApi;
+    private final long creationTime = System.nanoTime();
 
     public static void main(String[] args) {
         CmdArgs cmdArgs = new CmdArgs();
@@ -41,32 +107,274 @@ public class GameServer {
     }
 
     public GameServer(CmdArgs args) {
+        this(args, null);
+    }
+
+    /**
+     * @param sharedEventStorageEngine An event storage engine shared with other game servers, e.g. by the nodes of a
+     *                                 cluster running in the same JVM, or {@code null} to create one from the args.
+     *                                 A shared engine isn't closed when the game server is stopped.
+     */
+    public GameServer(CmdArgs args, EventStorageEngine sharedEventStorageEngine) {
         log.info("Starting {} with args: {}", GameServer.class.getSimpleName(), args);
+        boolean cluster = !args.clusterNodes.isEmpty();
+        if (cluster) {
+            verifyClusterConfiguration(args, sharedEventStorageEngine);
+        }
 
-        GameInfoProjection gameInfoProjection = new GameInfoProjection();
+        gameInfoProjection = new GameInfoProjection(RetentionPolicy.builder()
+                .maxEndedGames(args.maxEndedGames)
+                .maxAge(args.endedGamesMaxAge > 0 ? Duration.ofMillis(args.endedGamesMaxAge) : null)
+                .archiveFile(args.gameArchive == null ? null : Paths.get(args.gameArchive))
+                .build());
 
-        axon = configureAxon(gameInfoProjection);
-        GameApplicationService gameApplicationService = new GameApplicationService(axon.commandGateway(), args.rounds);
-        gameApi = new GameApi(args.port, args.directoriesLoadLocation, args.staticDirectories, gameApplicationService, gameInfoProjection);
+        ownsEventStorageEngine = sharedEventStorageEngine == null;
+        eventStorageEngine = ownsEventStorageEngine ? createEventStorageEngine(args) : sharedEventStorageEngine;
+        tokenStore = createTokenStore(args);
+        catchUpProjections(args);
+        BoundedCache gameCache = args.gameCacheSize > 0 ? new BoundedCache(args.gameCacheSize, args.gameCacheIdleTimeout) : null;
+        axon = configureAxon(eventStorageEngine, tokenStore, gameCache, metrics, args, gameInfoProjection, playerStatsProjection);
+        projectionLagMonitor = args.projectionProcessor == ProcessorType.TRACKING ? new ProcessorLagMonitor(GameInfoProjection.PROCESSING_GROUP, tokenStore, eventStorageEngine, LAG_LOG_INTERVAL_MILLIS) : null;
+        gameInfoCheckpointer = args.projectionCheckpoint == null ? null : new ProjectionCheckpointer(GameInfoProjection.PROCESSING_GROUP, gameInfoPosition(args),
+                position -> gameInfoProjection.writeCheckpoint(Paths.get(args.projectionCheckpoint), position), args.projectionCheckpointInterval);
+        registerGauges(gameInfoProjection, playerStatsProjection, gameCache);
+        clusterCommandSender = cluster ? new HttpCommandSender(args.clusterConnections, Duration.ofMillis(args.clusterCommandTimeout)) : null;
+        CommandDispatcher commandDispatcher = cluster ?
+                new ClusterCommandDispatcher(new ConsistentHash(args.clusterNodes), args.clusterNode, axon.commandGateway(), clusterCommandSender) :
+                axon.commandGateway()::send;
+        asyncCommandDispatcher = args.httpMode == HttpMode.ASYNC ? new ExecutorCommandDispatcher(commandDispatcher, args.asyncCommandThreads, args.asyncCommandQueueSize) : null;
+        if (asyncCommandDispatcher != null) {
+            metrics.gauge("commands.queued", asyncCommandDispatcher::queued);
+        }
+        GameApplicationService gameApplicationService = new GameApplicationService(asyncCommandDispatcher == null ? commandDispatcher : asyncCommandDispatcher, args.rounds, metrics);
+        gameApi = new GameApi(args.port, args.httpThreads, args.directoriesLoadLocation, args.staticDirectories, args.updateInterval, Duration.ofMillis(args.projectionTimeout), gameApplicationService, gameInfoProjection, playerStatsProjection, metrics);
+        if (cluster) {
+            gameApi.acceptClusterCommands(axon.commandGateway());
+        }
     }
 
     public GameServer start() {
         axon.start();
         gameApi.start();
+        log.info("Started {} in {} ms", GameServer.class.getSimpleName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - creationTime));
         return this;
     }
 
     public void stop() {
         gameApi.stop();
+        close(asyncCommandDispatcher);
+        // Let the disruptor handle the commands it has already accepted before the event processors are shut down
+        if (axon.commandBus() instanceof DisruptorCommandBus) {
+            ((DisruptorCommandBus) axon.commandBus()).stop();
+        }
         axon.shutdown();
+        close(clusterCommandSender);
+        close(projectionLagMonitor);
+        // Written once the event processors have been shut down, so that the checkpoint includes every applied event
+        close(gameInfoCheckpointer);
+        close(gameInfoProjection);
+        close(tokenStore);
+        if (ownsEventStorageEngine) {
+            close(eventStorageEngine);
+        }
+    }
+
+    public int port() {
+        return gameApi.port();
+    }
+
+    public Optional<ProcessorLagMonitor> projectionLagMonitor() {
+        return Optional.ofNullable(projectionLagMonitor);
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    private void registerGauges(GameInfoProjection gameInfoProjection, PlayerStatsProjection playerStatsProjection, BoundedCache gameCache) {
+        for (GameInfoState state : GameInfoState.values()) {
+            metrics.gauge("games", () -> gameInfoProjection.count(state), "state", state.name().toLowerCase());
+        }
+        metrics.gauge("players", playerStatsProjection::playerCount);
+        metrics.gauge("projection.waiters", gameInfoProjection::versionWaiterCount);
+        if (projectionLagMonitor != null) {
+            metrics.gauge("projection.lag", projectionLagMonitor::lag, "processor", projectionLagMonitor.processorName());
+        }
+        if (gameCache != null) {
+            metrics.gauge("cache.size", gameCache::size, "cache", "game");
+        }
+    }
+
+    /**
+     * Bring the projections, which are kept in memory, up to date with the stored events before they're handed to the
+     * event processors and the API, so that nothing sees a partially restored projection. The game info projection is
+     * restored from its checkpoint, if any. The stored events are then replayed in parallel when rebuilding or when the
+     * processors are subscribing, since those only see new events, or else left to the tracking processors, which are
+     * told where each projection is at. The player statistics have no checkpoint, so they're always replayed in full.
+     */
+    private void catchUpProjections(CmdArgs args) {
+        TrackingToken gameInfoPosition = null;
+        TrackingToken playerStatsPosition = null;
+        if (args.projectionCheckpoint != null) {
+            long start = System.nanoTime();
+            OptionalLong checkpointPosition = gameInfoProjection.restoreCheckpoint(Paths.get(args.projectionCheckpoint));
+            if (checkpointPosition.isPresent()) {
+                gameInfoPosition = tokenOf(checkpointPosition.getAsLong());
+                log.info("Restored game info projection from checkpoint {} at position {} in {} ms", args.projectionCheckpoint, checkpointPosition.getAsLong(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+
+        ProjectionReplayer replayer = new ProjectionReplayer(eventStorageEngine, args.rebuildThreads, ProjectionReplayer.DEFAULT_BATCH_SIZE);
+        if (args.rebuildProjections || args.projectionProcessor == ProcessorType.SUBSCRIBING) {
+            if (gameInfoPosition == null) {
+                // No checkpoint, e.g. when checkpoints were just enabled for an existing event store, so replay everything
+                gameInfoPosition = playerStatsPosition = replayer.replay(gameInfoProjection, playerStatsProjection).lastToken();
+            } else {
+                gameInfoPosition = replayer.replayAfter(gameInfoPosition, gameInfoProjection).lastToken();
+                playerStatsPosition = replayer.replay(playerStatsProjection).lastToken();
+            }
+        }
+
+        if (args.projectionProcessor == ProcessorType.TRACKING) {
+            startTrackingAt(GameInfoProjection.PROCESSING_GROUP, gameInfoPosition, args.projectionSegments);
+            startTrackingAt(PlayerStatsProjection.PROCESSING_GROUP, playerStatsPosition, args.projectionSegments);
+        }
     }
 
-    private static Configuration configureAxon(Object... projections) {
+    /**
+     * Replace the tokens of a tracking processor, including those of segments left by an earlier run with a different
+     * number of segments, so that it continues after the given token, or from the beginning if it's {@code null}.
+     */
+    private void startTrackingAt(String processingGroup, TrackingToken token, int segments) {
+        if (tokenStore instanceof FileTokenStore) {
+            ((FileTokenStore) tokenStore).reset(processingGroup);
+        }
+        if (token == null) {
+            // A processor without tokens initializes its segments at the beginning of the event stream
+            return;
+        }
+        for (int segment = 0; segment < segments; segment++) {
+            tokenStore.storeToken(token, processingGroup, segment);
+        }
+    }
+
+    /**
+     * @return The global index of an event up to which the game info projection has applied all events, i.e. the
+     * oldest token of the tracking processor or else the head of the event store, see {@link ProjectionCheckpointer}
+     */
+    private LongSupplier gameInfoPosition(CmdArgs args) {
+        if (args.projectionProcessor == ProcessorType.TRACKING) {
+            return () -> Arrays.stream(tokenStore.fetchSegments(GameInfoProjection.PROCESSING_GROUP))
+                    .mapToLong(segment -> globalIndexOf(tokenStore.fetchToken(GameInfoProjection.PROCESSING_GROUP, segment)))
+                    .min()
+                    .orElse(NO_EVENT);
+        }
+        return () -> globalIndexOf(eventStorageEngine.createHeadToken());
+    }
+
+    private static long globalIndexOf(TrackingToken token) {
+        if (token == null) {
+            return NO_EVENT;
+        } else if (token instanceof GlobalSequenceTrackingToken) {
+            return ((GlobalSequenceTrackingToken) token).getGlobalIndex();
+        }
+        throw new IllegalArgumentException("Unsupported tracking token: " + token.getClass().getName());
+    }
+
+    private static TrackingToken tokenOf(long globalIndex) {
+        return globalIndex == NO_EVENT ? null : new GlobalSequenceTrackingToken(globalIndex);
+    }
+
+    private static void close(Object resource) {
+        if (resource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                log.error("Failed to close {}", resource.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private static void verifyClusterConfiguration(CmdArgs args, EventStorageEngine sharedEventStorageEngine) {
+        if (args.clusterNode == null || !args.clusterNodes.contains(args.clusterNode)) {
+            throw new IllegalArgumentException("The URL of this node must be specified with --cluster-node and be one of the cluster nodes " + args.clusterNodes);
+        }
+        // Each node only publishes the events of its own games, so the projections of a node must read the events of all games from the event store
+        if (args.projectionProcessor != ProcessorType.TRACKING) {
+            throw new IllegalArgumentException("Cluster mode requires tracking projections");
+        }
+        // Neither the in-memory nor the file event store can be shared by processes
+        if (sharedEventStorageEngine == null && args.eventStore != EventStoreType.JDBC) {
+            throw new IllegalArgumentException("Cluster mode requires an event store shared by all nodes, i.e. the JDBC event store");
+        }
+    }
+
+    private static EventStorageEngine createEventStorageEngine(CmdArgs args) {
+        Serializer serializer = args.eventSerializer == EventSerializerType.BINARY ? new BinaryEventSerializer(new XStreamSerializer()) : new XStreamSerializer();
+        switch (args.eventStore) {
+            case FILE:
+                return new FileEventStorageEngine(Paths.get(args.eventStoreDirectory), serializer, FileEventStorageEngine.DEFAULT_SEGMENT_SIZE, args.eventStoreSync);
+            case JDBC:
+                return JdbcEventStorageEngine.h2(args.eventStoreUrl, args.eventStoreConnections, serializer);
+            default:
+                return new InMemoryEventStorageEngine();
+        }
+    }
+
+    private static TokenStore createTokenStore(CmdArgs args) {
+        switch (args.eventStore) {
+            case FILE:
+                // The tokens are replaced on startup to match what the projections, kept in memory, have restored
+                return new FileTokenStore(Paths.get(args.eventStoreDirectory).resolve("tokens.properties"));
+            default:
+                // The tokens of a shared JDBC event store are kept in memory too, since each process rebuilds its projections on startup
+                return new InMemoryTokenStore();
+        }
+    }
+
+    private static Configuration configureAxon(EventStorageEngine eventStorageEngine, TokenStore tokenStore, Cache gameCache, Metrics metrics, CmdArgs args, Object... projections) {
         EventHandlingConfiguration eventHandlingConfiguration = new EventHandlingConfiguration();
         Arrays.stream(projections).forEach(projection -> eventHandlingConfiguration.registerEventHandler(__ -> projection));
-        return DefaultConfigurer.defaultConfiguration()
-                .configureAggregate(Game.class)
-                .configureEventStore(c -> new EmbeddedEventStore(new InMemoryEventStorageEngine())) //(2)
+        if (gameCache != null) {
+            // Evict ended games as part of handling the final move, regardless of how the projections are updated
+            eventHandlingConfiguration.registerEventHandler(__ -> new GameCacheEvictor(gameCache));
+            eventHandlingConfiguration.registerSubscribingEventProcessor(GameCacheEvictor.PROCESSING_GROUP);
+        }
+        eventHandlingConfiguration.registerHandlerInterceptor((c, processorName) -> new TimingEventHandlerInterceptor(metrics, processorName));
+        if (args.projectionProcessor == ProcessorType.TRACKING) {
+            // Tracking processors split events into segments by aggregate identifier, i.e. by game id, by default
+            for (String processingGroup : PROJECTION_PROCESSING_GROUPS) {
+                eventHandlingConfiguration.registerTrackingProcessor(processingGroup, c -> TrackingEventProcessorConfiguration
+                        .forParallelProcessing(args.projectionSegments)
+                        .andInitialSegmentsCount(args.projectionSegments));
+            }
+        }
+        int snapshotThreshold = args.snapshotThreshold;
+        Function<Configuration, SnapshotTriggerDefinition> snapshotTrigger = c -> new TimingSnapshotTriggerDefinition(snapshotThreshold > 0 ?
+                new EventCountSnapshotTriggerDefinition(new AggregateSnapshotter(c.eventStore(), new GenericAggregateFactory<>(Game.class)), snapshotThreshold) :
+                NoSnapshotTriggerDefinition.INSTANCE, metrics);
+        AggregateConfigurer<Game> gameConfigurer = AggregateConfigurer.defaultConfiguration(Game.class);
+        Configurer configurer = DefaultConfigurer.defaultConfiguration();
+        if (args.commandBus == CommandBusType.DISRUPTOR) {
+            int threads = args.commandBusThreads;
+            configurer.configureCommandBus(c -> new DisruptorCommandBus(new DisruptorConfiguration()
+                    .setInvokerThreadCount(threads)
+                    .setPublisherThreadCount(threads)
+                    .setCache(gameCache == null ? new WeakReferenceCache() : gameCache)));
+            // Aggregates must be loaded through the command bus when using the disruptor since it caches them
+            gameConfigurer.configureRepository(c -> ((DisruptorCommandBus) c.commandBus()).createRepository(c.eventStore(), new GenericAggregateFactory<>(Game.class), snapshotTrigger.apply(c), c.parameterResolverFactory()));
+        } else if (gameCache != null) {
+            gameConfigurer.configureRepository(c -> new CachingEventSourcingRepository<>(new GenericAggregateFactory<>(Game.class), c.eventStore(), gameCache, snapshotTrigger.apply(c)));
+        } else {
+            gameConfigurer.configureSnapshotTrigger(snapshotTrigger);
+        }
+        return configurer
+                .configureAggregate(gameConfigurer)
+                .configureEventStore(c -> args.clusterNodes.isEmpty() ?
+                        new EmbeddedEventStore(eventStorageEngine) :
+                        // Poll for events appended by other nodes more often than the default of once a second, since no events are published locally to wake up the tracking processors
+                        new EmbeddedEventStore(eventStorageEngine, NoOpMessageMonitor.INSTANCE, EVENT_STORE_CACHED_EVENTS, args.clusterPollInterval, EVENT_STORE_CLEANUP_DELAY_MILLIS, TimeUnit.MILLISECONDS)) //(2)
+                .registerComponent(TokenStore.class, c -> tokenStore)
                 .registerModule(eventHandlingConfiguration) // (3)
                 // .registerQueryHandler(c -> projection) // (4)
                 .buildConfiguration();
@@ -81,14 +389,127 @@ public class GameServer {
         @Parameter(names = {"-l", "--directories-load-location"}, description = "Load location of the static directories")
         private Location directoriesLoadLocation = Location.CLASSPATH;
 
-        @Parameter(names = {"-p", "--port"}, description = "Port")
+        @Parameter(names = {"-p", "--port"}, description = "Port, 0 picks a free port")
         private int port = 8080;
 
         @Parameter(names = {"-r", "--rounds"}, description = "Number of rounds in game")
         private int rounds = 3;
 
+        @Parameter(names = {"--http-threads"}, description = "Maximum number of threads handling HTTP requests")
+        private int httpThreads = 250;
+
+        @Parameter(names = {"--http-mode"}, description = "How commands sent through the HTTP API are handled, either on the request thread (blocking) or handed over to a pool of --async-command-threads threads (async). In both modes request threads don't wait for the projections to be updated")
+        private HttpMode httpMode = HttpMode.BLOCKING;
+
+        @Parameter(names = {"--async-command-threads"}, description = "Number of threads handling commands sent through the HTTP API in async mode")
+        private int asyncCommandThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+        @Parameter(names = {"--async-command-queue-size"}, description = "Maximum number of commands waiting to be handled in async mode, further commands are rejected with 503 Service Unavailable")
+        private int asyncCommandQueueSize = 10_000;
+
+        @Parameter(names = {"-u", "--update-interval"}, description = "Interval in milliseconds at which changed games are pushed to web socket clients at /api/updates")
+        private long updateInterval = 100;
+
+        @Parameter(names = {"-t", "--projection-timeout"}, description = "Maximum time in milliseconds to wait for a game to be updated by the projections before responding to a command")
+        private long projectionTimeout = 5000;
+
+        @Parameter(names = {"--command-bus"}, description = "How commands are handled, either on the thread sending them (simple) or by threads consuming a ring buffer with cached games (disruptor)")
+        private CommandBusType commandBus = CommandBusType.SIMPLE;
+
+        @Parameter(names = {"--command-bus-threads"}, description = "Number of threads handling commands, and storing events, when using the disruptor command bus. Commands of a game are always handled by the same thread")
+        private int commandBusThreads = 2;
+
+        @Parameter(names = {"--game-cache-size"}, description = "Number of games kept in memory between commands so that they don't have to be loaded from the event store, 0 disables the cache. Ended games are evicted right away")
+        private int gameCacheSize = 0;
+
+        @Parameter(names = {"--game-cache-idle-timeout"}, description = "Time in milliseconds after which a cached game that hasn't received any commands is evicted, 0 means never")
+        private long gameCacheIdleTimeout = 60_000;
+
+        @Parameter(names = {"--projection-processor"}, description = "How events are delivered to the projections, either synchronously on the command thread (subscribing) or asynchronously (tracking)")
+        private ProcessorType projectionProcessor = ProcessorType.SUBSCRIBING;
+
+        @Parameter(names = {"--projection-segments"}, description = "Number of segments, and threads, processing events in parallel when using tracking projections")
+        private int projectionSegments = 4;
+
+        @Parameter(names = {"--rebuild-projections"}, description = "Rebuild the projections from the stored events in parallel before the server starts, instead of letting the event processors catch up one event at a time")
+        private boolean rebuildProjections = false;
+
+        @Parameter(names = {"--rebuild-threads"}, description = "Number of threads replaying events of different games in parallel when rebuilding the projections")
+        private int rebuildThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(names = {"--projection-checkpoint"}, description = "File that the game info projection is periodically written to, and restored from on startup so that only the events stored after the checkpoint need to be replayed. Disabled if not specified")
+        private String projectionCheckpoint;
+
+        @Parameter(names = {"--projection-checkpoint-interval"}, description = "Time in milliseconds between checkpoints of the game info projection")
+        private long projectionCheckpointInterval = 60_000;
+
+        @Parameter(names = {"-s", "--snapshot-threshold"}, description = "Number of events of a game after which a snapshot is taken, 0 disables snapshots")
+        private int snapshotThreshold = 0;
+
+        @Parameter(names = {"--max-ended-games"}, description = "Number of ended games kept in memory, older ones are archived to disk and can only be found by id. 0 keeps all ended games in memory")
+        private int maxEndedGames = 0;
+
+        @Parameter(names = {"--ended-games-max-age"}, description = "Time in milliseconds an ended game is kept in memory before it's archived to disk. 0 keeps ended games in memory regardless of age")
+        private long endedGamesMaxAge = 0;
+
+        @Parameter(names = {"--game-archive"}, description = "File that archived games are written to, a temporary file is used if not specified")
+        private String gameArchive;
+
+        @Parameter(names = {"--event-store"}, description = "Where events are stored, either in memory, in append-only files on disk or in an embedded H2 database through JDBC that several processes can share")
+        private EventStoreType eventStore = EventStoreType.MEMORY;
+
+        @Parameter(names = {"--event-store-directory"}, description = "Directory of the event store files when using the file event store")
+        private String eventStoreDirectory = "data/events";
+
+        @Parameter(names = {"--event-store-url"}, description = "JDBC URL of the H2 database when using the JDBC event store. AUTO_SERVER=TRUE lets several processes share the database file")
+        private String eventStoreUrl = "jdbc:h2:file:./data/events;AUTO_SERVER=TRUE";
+
+        @Parameter(names = {"--event-store-connections"}, description = "Maximum number of pooled database connections when using the JDBC event store")
+        private int eventStoreConnections = 16;
+
+        @Parameter(names = {"--event-serializer"}, description = "How events are serialized when using the file or JDBC event store, either in a compact binary form or as XML using XStream. Meta data and snapshots are always serialized with XStream")
+        private EventSerializerType eventSerializer = EventSerializerType.BINARY;
+
+        @Parameter(names = {"--event-store-sync"}, description = "Force events to disk before a command completes when using the file event store")
+        private boolean eventStoreSync = false;
+
+        @Parameter(names = {"--cluster-nodes"}, description = "Base URLs of all nodes of a cluster, e.g. http://localhost:8081,http://localhost:8082. Each game is handled by one of the nodes, picked by consistent hashing of the game id, and commands of games owned by other nodes are sent to them. Requires tracking projections and the JDBC event store, shared by the nodes")
+        private List<String> clusterNodes = new ArrayList<>();
+
+        @Parameter(names = {"--cluster-node"}, description = "Base URL of this node, which must be one of the cluster nodes")
+        private String clusterNode;
+
+        @Parameter(names = {"--cluster-connections"}, description = "Maximum number of commands sent concurrently to other nodes of the cluster")
+        private int clusterConnections = 64;
+
+        @Parameter(names = {"--cluster-command-timeout"}, description = "Time in milliseconds to wait for another node of the cluster to handle a command")
+        private long clusterCommandTimeout = 5000;
+
+        @Parameter(names = {"--cluster-poll-interval"}, description = "Time in milliseconds between polls of the event store for events of games handled by other nodes of the cluster")
+        private long clusterPollInterval = 10;
+
         @SuppressWarnings("unused")
         @Parameter(names = {"-h", "--help"}, help = true, hidden = true)
         private boolean help;
     }
+
+    public enum EventStoreType {
+        MEMORY, FILE, JDBC
+    }
+
+    public enum CommandBusType {
+        SIMPLE, DISRUPTOR
+    }
+
+    public enum EventSerializerType {
+        BINARY, XSTREAM
+    }
+
+    public enum ProcessorType {
+        SUBSCRIBING, TRACKING
+    }
+
+    public enum HttpMode {
+        BLOCKING, ASYNC
+    }
 }
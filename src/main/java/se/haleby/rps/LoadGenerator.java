@@ -0,0 +1,354 @@
+package se.haleby.rps;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.haleby.rps.GameServer.HttpMode;
+import se.haleby.rps.GameServer.ProcessorType;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.metrics.LatencyHistogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates load by playing games through the HTTP API of a game server, either one that is already running or one
+ * started in-process on a free port, and reports throughput and latency percentiles per endpoint.
+ * <p>
+ * Each concurrent game is played by a thread of its own that creates a game, lets two players take turns making random
+ * moves until the game has ended, and then starts over with a new game. Requests are sent one after the other per
+ * game, so latencies are measured from when a request was sent, not from when it was meant to be sent.
+ */
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Move[] MOVES = Move.values();
+    // Ties are replayed, so in theory a game never has to end
+    private static final int MAX_MOVES_PER_GAME = 1000;
+
+    private final CmdArgs args;
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+    private volatile boolean running;
+
+    public static void main(String[] args) throws InterruptedException {
+        CmdArgs cmdArgs = new CmdArgs();
+        JCommander jCommander = new JCommander(cmdArgs);
+        jCommander.setProgramName("rock-paper-scissors-load-generator");
+        jCommander.parse(args);
+        if (cmdArgs.help) {
+            jCommander.usage();
+            return;
+        }
+        if (cmdArgs.compareHttpModes) {
+            if (cmdArgs.url != null) {
+                throw new IllegalArgumentException("HTTP modes can only be compared using in-process game servers");
+            }
+            for (HttpMode httpMode : HttpMode.values()) {
+                System.out.println("HTTP mode: " + httpMode.name().toLowerCase());
+                new LoadGenerator(cmdArgs.httpMode(httpMode)).run().print(System.out);
+                System.out.println();
+            }
+        } else {
+            new LoadGenerator(cmdArgs).run().print(System.out);
+        }
+    }
+
+    public LoadGenerator(CmdArgs args) {
+        this.args = args;
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        GameServer gameServer = args.url == null ? startGameServer() : null;
+        String baseUrl = gameServer == null ? args.url : "http://localhost:" + gameServer.port();
+        log.info("Generating load against {} with args: {}", baseUrl, args);
+
+        running = true;
+        ExecutorService executor = Executors.newFixedThreadPool(args.games + args.pollers);
+        try {
+            for (int i = 0; i < args.games; i++) {
+                String players = "load-" + i;
+                executor.execute(() -> playGames(baseUrl, players));
+            }
+            for (int i = 0; i < args.pollers; i++) {
+                executor.execute(() -> pollGames(baseUrl));
+            }
+
+            if (args.warmup > 0) {
+                TimeUnit.SECONDS.sleep(args.warmup);
+                stats.values().forEach(EndpointStats::reset);
+            }
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(args.duration);
+            long durationNanos = System.nanoTime() - start;
+            // Take the report before stopping, so that requests cut short by the shutdown aren't counted
+            return new Report(durationNanos, stats);
+        } finally {
+            running = false;
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            if (gameServer != null) {
+                gameServer.stop();
+            }
+        }
+    }
+
+    private GameServer startGameServer() {
+        return new GameServer(GameServer.CmdArgs.with()
+                .port(0)
+                .rounds(args.rounds)
+                .projectionProcessor(args.projectionProcessor)
+                .httpMode(args.httpMode)
+                .httpThreads(args.httpThreads))
+                .start();
+    }
+
+    private void playGames(String baseUrl, String players) {
+        String player1 = players + "-1";
+        String player2 = players + "-2";
+        while (running) {
+            String gameUrl = baseUrl + "/api/games/" + UUID.randomUUID();
+            if (send(Endpoint.CREATE_GAME, "PUT", gameUrl, player1, null) == null) {
+                continue;
+            }
+            String state = null;
+            for (int moves = 0; running && !"ended".equals(state) && moves < MAX_MOVES_PER_GAME; moves++) {
+                think();
+                String response = send(Endpoint.MAKE_MOVE, "PUT", gameUrl, moves % 2 == 0 ? player1 : player2, randomMove());
+                if (response == null) {
+                    break;
+                }
+                state = stateOf(response);
+            }
+        }
+    }
+
+    private void pollGames(String baseUrl) {
+        String url = baseUrl + "/api/games" + (args.pollQuery.isEmpty() ? "" : "?" + args.pollQuery);
+        while (running) {
+            send(Endpoint.LIST_GAMES, "GET", url, null, null);
+            sleep(args.pollInterval);
+        }
+    }
+
+    /**
+     * @return The response body, or {@code null} if the request failed
+     */
+    private String send(Endpoint endpoint, String method, String url, String player, Move move) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            if (player != null) {
+                connection.setRequestProperty("player", player);
+            }
+            if (move != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                try (OutputStream body = connection.getOutputStream()) {
+                    body.write(("move=" + move.name().toLowerCase()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            // Read the whole response, also on errors, so that the connection can be kept alive and reused
+            String response = readFully(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            endpointStats.latencies.record(System.nanoTime() - start);
+            if (status >= 400) {
+                endpointStats.errors.increment();
+                log.debug("{} {} failed with status {}: {}", method, url, status, response);
+                return null;
+            }
+            return response;
+        } catch (IOException e) {
+            if (running) {
+                endpointStats.errors.increment();
+                log.debug("{} {} failed", method, url, e);
+            }
+            return null;
+        }
+    }
+
+    private void think() {
+        if (args.thinkTime > 0) {
+            sleep(ThreadLocalRandom.current().nextLong(args.thinkTime + 1));
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            running = false;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Move randomMove() {
+        return MOVES[ThreadLocalRandom.current().nextInt(MOVES.length)];
+    }
+
+    private static String stateOf(String game) {
+        try {
+            return JSON.readTree(game).path("state").asText();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse game: " + game, e);
+        }
+    }
+
+    private static String readFully(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return "";
+        }
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public enum Endpoint {
+        CREATE_GAME("PUT /api/games/:gameId (create)"),
+        MAKE_MOVE("PUT /api/games/:gameId (move)"),
+        LIST_GAMES("GET /api/games");
+
+        private final String description;
+
+        Endpoint(String description) {
+            this.description = description;
+        }
+    }
+
+    private static class EndpointStats {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+
+    /**
+     * Throughput and latencies per endpoint during the measured part of a run.
+     */
+    public static class Report {
+        private static final double[] PERCENTILES = {50, 99, 99.9};
+
+        private final long durationNanos;
+        private final Map<Endpoint, Long> requests = new EnumMap<>(Endpoint.class);
+        private final Map<Endpoint, Long> errors = new EnumMap<>(Endpoint.class);
+        private final Map<Endpoint, long[]> percentiles = new EnumMap<>(Endpoint.class);
+
+        private Report(long durationNanos, Map<Endpoint, EndpointStats> stats) {
+            this.durationNanos = durationNanos;
+            stats.forEach((endpoint, endpointStats) -> {
+                requests.put(endpoint, endpointStats.latencies.count());
+                errors.put(endpoint, endpointStats.errors.sum());
+                long[] values = new long[PERCENTILES.length + 1];
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    values[i] = endpointStats.latencies.percentileNanos(PERCENTILES[i]);
+                }
+                values[PERCENTILES.length] = endpointStats.latencies.maxNanos();
+                percentiles.put(endpoint, values);
+            });
+        }
+
+        public long requests(Endpoint endpoint) {
+            return requests.get(endpoint);
+        }
+
+        public long errors(Endpoint endpoint) {
+            return errors.get(endpoint);
+        }
+
+        public double throughput(Endpoint endpoint) {
+            return requests(endpoint) / (durationNanos / 1e9);
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-34s %10s %8s %10s %10s %10s %10s %10s%n", "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            for (Endpoint endpoint : Endpoint.values()) {
+                long[] values = percentiles.get(endpoint);
+                out.printf("%-34s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", endpoint.description, requests(endpoint), errors(endpoint), throughput(endpoint),
+                        millis(values[0]), millis(values[1]), millis(values[2]), millis(values[3]));
+            }
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    @Data(staticConstructor = "with")
+    @Accessors(fluent = true)
+    public static class CmdArgs {
+        @Parameter(names = {"--url"}, description = "Base URL of a running game server, e.g. http://localhost:8080. A game server is started in-process on a free port if not specified")
+        private String url;
+
+        @Parameter(names = {"-g", "--games"}, description = "Number of games played concurrently, each by a thread of its own")
+        private int games = 50;
+
+        @Parameter(names = {"-r", "--rounds"}, description = "Number of rounds in game, only used by an in-process game server")
+        private int rounds = 3;
+
+        @Parameter(names = {"--think-time"}, description = "Maximum time in milliseconds a player thinks before making a move, the actual time is random")
+        private long thinkTime = 0;
+
+        @Parameter(names = {"--pollers"}, description = "Number of threads polling GET /api/games")
+        private int pollers = 1;
+
+        @Parameter(names = {"--poll-interval"}, description = "Time in milliseconds between two polls of a poller")
+        private long pollInterval = 100;
+
+        @Parameter(names = {"--poll-query"}, description = "Query string of the polls of GET /api/games")
+        private String pollQuery = "state=joinable&limit=50";
+
+        @Parameter(names = {"-w", "--warmup"}, description = "Seconds to generate load before measuring starts")
+        private long warmup = 5;
+
+        @Parameter(names = {"--duration"}, description = "Seconds to generate load while measuring")
+        private long duration = 30;
+
+        @Parameter(names = {"--projection-processor"}, description = "How events are delivered to the projections of an in-process game server")
+        private ProcessorType projectionProcessor = ProcessorType.SUBSCRIBING;
+
+        @Parameter(names = {"--http-mode"}, description = "How commands are handled by an in-process game server, see the game server option of the same name")
+        private HttpMode httpMode = HttpMode.BLOCKING;
+
+        @Parameter(names = {"--http-threads"}, description = "Maximum number of threads handling HTTP requests of an in-process game server")
+        private int httpThreads = 250;
+
+        @Parameter(names = {"--compare-http-modes"}, description = "Generate load against an in-process game server in each HTTP mode, one after the other, and report each run")
+        private boolean compareHttpModes = false;
+
+        @SuppressWarnings("unused")
+        @Parameter(names = {"-h", "--help"}, help = true, hidden = true)
+        private boolean help;
+    }
+}
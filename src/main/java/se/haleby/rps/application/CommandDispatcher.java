@@ -0,0 +1,16 @@
+package se.haleby.rps.application;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dispatches commands to where they're handled, e.g. to the local command bus or to the node of a cluster that owns
+ * the game that a command targets.
+ */
+@FunctionalInterface
+public interface CommandDispatcher {
+
+    /**
+     * @return A future completed with the result of handling the command
+     */
+    CompletableFuture<?> dispatch(Object command);
+}
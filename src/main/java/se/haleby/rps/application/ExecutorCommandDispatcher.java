@@ -0,0 +1,72 @@
+package se.haleby.rps.application;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches commands on a fixed number of threads of its own, so that the thread sending a command, e.g. an HTTP
+ * request thread, is free as soon as the command has been queued, even if the command bus handles commands on the
+ * thread dispatching them. Commands that don't fit in the queue are rejected rather than queued without bounds.
+ */
+public class ExecutorCommandDispatcher implements CommandDispatcher, AutoCloseable {
+    private final CommandDispatcher delegate;
+    private final ThreadPoolExecutor executor;
+
+    public ExecutorCommandDispatcher(CommandDispatcher delegate, int threads, int queueSize) {
+        this.delegate = delegate;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "command-dispatcher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return A future completed with the result of the command, or completed exceptionally with a
+     * {@link RejectedExecutionException} if the queue is full
+     */
+    @Override
+    public CompletableFuture<?> dispatch(Object command) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    delegate.dispatch(command).whenComplete((value, failure) -> {
+                        if (failure == null) {
+                            result.complete(value);
+                        } else {
+                            result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new RejectedExecutionException("Too many commands waiting to be handled, " + executor.getQueue().size() + " are queued"));
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of commands waiting for a thread
+     */
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting commands and wait for the queued ones to be dispatched.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
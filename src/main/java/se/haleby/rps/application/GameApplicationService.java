@@ -1,28 +1,56 @@
 package se.haleby.rps.application;
 
-import org.axonframework.commandhandling.gateway.CommandGateway;
 import se.haleby.rps.domain.command.CreateGame;
 import se.haleby.rps.domain.command.MakeMove;
 import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.metrics.LatencyHistogram;
+import se.haleby.rps.infrastructure.metrics.Metrics;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class GameApplicationService {
+    // A game is created by a single event
+    private static final long VERSION_OF_CREATED_GAME = 0;
 
-    private final CommandGateway commandGateway;
+    private final CommandDispatcher commandDispatcher;
     private final int rounds;
+    private final Metrics metrics;
+    private final Map<Class<?>, LatencyHistogram> dispatchTimers = new ConcurrentHashMap<>();
 
-    public GameApplicationService(CommandGateway commandGateway, int rounds) {
-        this.commandGateway = commandGateway;
+    public GameApplicationService(CommandDispatcher commandDispatcher, int rounds, Metrics metrics) {
+        this.commandDispatcher = commandDispatcher;
         this.rounds = rounds;
+        this.metrics = metrics;
     }
 
-    public CompletableFuture<?> startGame(String gameId, String creator) {
-        return commandGateway.send(CreateGame.builder().gameId(gameId).creator(creator).rounds(rounds).creationDate(new Date()).build());
+    /**
+     * @return A future completed with the version of the game once it has been created
+     */
+    public CompletableFuture<Long> startGame(String gameId, String creator) {
+        return send(CreateGame.builder().gameId(gameId).creator(creator).rounds(rounds).creationDate(new Date()).build())
+                .thenApply(__ -> VERSION_OF_CREATED_GAME);
     }
 
-    public CompletableFuture<?> makeMove(String gameId, String player, Move move) {
-        return commandGateway.send(MakeMove.builder().gameId(gameId).player(player).move(move).build());
+    /**
+     * @return A future completed with the version of the game after the move
+     */
+    public CompletableFuture<Long> makeMove(String gameId, String player, Move move) {
+        return send(MakeMove.builder().gameId(gameId).player(player).move(move).build());
+    }
+
+    /**
+     * Sends a command and times it, from dispatch until its result is available, as
+     * {@code commands.dispatch{command=..}}.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> CompletableFuture<R> send(Object command) {
+        LatencyHistogram timer = dispatchTimers.computeIfAbsent(command.getClass(), type -> metrics.timer("commands.dispatch", "command", type.getSimpleName()));
+        long start = System.nanoTime();
+        CompletableFuture<R> result = (CompletableFuture<R>) commandDispatcher.dispatch(command);
+        result.whenComplete((__, ___) -> timer.recordSince(start));
+        return result;
     }
 }
@@ -8,14 +8,11 @@ import se.haleby.rps.domain.command.CreateGame;
 import se.haleby.rps.domain.command.MakeMove;
 import se.haleby.rps.domain.event.*;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
 
-import static java.util.Collections.emptyList;
-import static java.util.Comparator.comparing;
 import static org.axonframework.commandhandling.model.AggregateLifecycle.apply;
+import static org.axonframework.commandhandling.model.AggregateLifecycle.getVersion;
 import static se.haleby.rps.domain.model.State.*;
 
 @AggregateRoot
@@ -26,8 +23,12 @@ public class Game {
     private State state;
     private String player1;
     private String player2;
-    private TreeSet<Round> rounds = new TreeSet<>(comparing(Round::roundNumber));
+    // Rounds are numbered from 1 and stored in order, so round n is found at index n - 1
+    private List<Round> rounds = new ArrayList<>();
     private int numberOfRoundsInGame;
+    // Maintained as rounds are won so that the rounds don't need to be counted on each move
+    private int wonRoundsPlayer1;
+    private int wonRoundsPlayer2;
 
     @SuppressWarnings("unused")
     Game() {
@@ -39,8 +40,11 @@ public class Game {
         apply(GameCreated.builder().gameId(cmd.getGameId()).createdBy(cmd.getCreator()).rounds(cmd.getRounds()).createdAt(cmd.getCreationDate()).build());
     }
 
+    /**
+     * @return The version of the game after the move, i.e. the sequence number of the last event applied
+     */
     @CommandHandler
-    public void handle(MakeMove cmd) {
+    public long handle(MakeMove cmd) {
         if (state != INITIALIZED && state != STARTED) {
             throw new IllegalStateException("Game is " + state);
         }
@@ -50,7 +54,7 @@ public class Game {
 
         apply(MoveMade.builder().gameId(cmd.getGameId()).player(cmd.getPlayer()).move(cmd.getMove()).round(round.roundNumber()).build());
 
-        Round playedRound = rounds.last();
+        Round playedRound = lastRound();
 
         if (playedRound.isEnded()) {
             int currentRoundNumber = rounds.size();
@@ -62,9 +66,6 @@ public class Game {
             apply(RoundEnded.builder().gameId(cmd.getGameId()).roundNumber(currentRoundNumber).build());
 
 
-            Map<Player, List<Round>> wonRoundsPerPlayer = rounds.stream().filter(Round::hasWinner).collect(Collectors.groupingBy(Round::winner));
-            int wonRoundsPlayer1 = wonRoundsPerPlayer.getOrDefault(Player.ONE, emptyList()).size();
-            int wonRoundsPlayer2 = wonRoundsPerPlayer.getOrDefault(Player.TWO, emptyList()).size();
             int majorityRounds = numberOfRoundsInGame / 2;
             if (wonRoundsPlayer1 > majorityRounds) {
                 apply(GameWon.builder().gameId(cmd.getGameId()).winner(player1).build());
@@ -84,6 +85,7 @@ public class Game {
                 apply(GameEnded.withGameId(cmd.getGameId()));
             }
         }
+        return getVersion();
     }
 
 
@@ -113,7 +115,19 @@ public class Game {
 
     @EventSourcingHandler
     public void when(MoveMade evt) {
-        rounds.stream().filter(round -> round.roundNumber() == evt.getRound()).findFirst().ifPresent(round -> round.play(playerOf(evt.getPlayer()), evt.getMove()));
+        int index = evt.getRound() - 1;
+        if (index >= 0 && index < rounds.size()) {
+            rounds.get(index).play(playerOf(evt.getPlayer()), evt.getMove());
+        }
+    }
+
+    @EventSourcingHandler
+    public void when(RoundWon evt) {
+        if (playerOf(evt.getWinner()) == Player.ONE) {
+            wonRoundsPlayer1++;
+        } else {
+            wonRoundsPlayer2++;
+        }
     }
 
     public void when(GameWon evt) {
@@ -145,14 +159,18 @@ public class Game {
         throw new IllegalStateException("Unknown player: " + player);
     }
 
-    private Round getOngoingRoundOrStartNextRound(TreeSet<Round> rounds) {
+    private Round lastRound() {
+        return rounds.get(rounds.size() - 1);
+    }
+
+    private Round getOngoingRoundOrStartNextRound(List<Round> rounds) {
         final Round round;
-        if (rounds.isEmpty() || rounds.last().isEnded()) {
+        if (rounds.isEmpty() || lastRound().isEnded()) {
             int roundNumber = rounds.size() + 1;
             round = new Round(roundNumber);
             apply(RoundStarted.builder().gameId(id).roundNumber(roundNumber).build());
         } else {
-            round = rounds.last();
+            round = lastRound();
         }
         return round;
     }
@@ -3,36 +3,36 @@ package se.haleby.rps.domain.model;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import static java.util.stream.Collectors.groupingBy;
 import static se.haleby.rps.domain.model.Move.*;
 
+/**
+ * A round keeps the move of each player in a slot of its own and resolves the winner by looking it up in a
+ * precomputed table, so that checking the outcome of a round doesn't allocate.
+ */
 @Data
 @Accessors(fluent = true)
 class Round {
-    private static final int NUMBER_OF_MOVES_PER_ROUND = 2;
+    // WINNERS[move of player one][move of player two] is the winning player, or null if the moves tie
+    private static final Player[][] WINNERS = winners();
+
     private final int roundNumber;
-    private Set<PlayerMove> moves = new HashSet<>(NUMBER_OF_MOVES_PER_ROUND);
+    private Move player1Move;
+    private Move player2Move;
 
     private boolean hasPlayed(Player player) {
-        return moves.stream().anyMatch(playerMove -> playerMove.isMadeBy(player));
+        return moveOf(player) != null;
     }
 
     boolean isEnded() {
-        State state = state();
-        return state == State.WON || state == State.TIED;
+        return player1Move != null && player2Move != null;
     }
 
     Player winner() {
-        return determineWinnerFromMoves();
+        return isEnded() ? WINNERS[player1Move.ordinal()][player2Move.ordinal()] : null;
     }
 
     boolean hasWinner() {
-        return determineWinnerFromMoves() != null;
+        return winner() != null;
     }
 
     void play(Player player, Move move) {
@@ -40,72 +40,42 @@ class Round {
             return;
         }
 
-        PlayerMove playerMove = PlayerMove.make(player, move);
-        moves.add(playerMove);
-    }
-
-    private State state() {
-        final State state;
-        boolean hasPlayer1Played = hasPlayed(Player.ONE);
-        boolean hasPlayer2Played = hasPlayed(Player.TWO);
-        if (hasPlayer1Played && hasPlayer2Played) {
-            if (hasWinner()) {
-                state = State.WON;
-            } else {
-                state = State.TIED;
-            }
-        } else if (hasPlayer1Played || hasPlayer2Played) {
-            state = State.STARTED;
+        if (player == Player.ONE) {
+            player1Move = move;
         } else {
-            state = State.INITIALIZED;
+            player2Move = move;
         }
-        return state;
     }
 
-    private Player determineWinnerFromMoves() {
-        if (moves.size() != NUMBER_OF_MOVES_PER_ROUND) {
-            return null;
-        }
-
-        Map<Player, List<PlayerMove>> playerMoves = moves.stream().collect(groupingBy(PlayerMove::player));
-        PlayerMove playerMove1 = playerMoves.get(Player.ONE).get(0);
-        PlayerMove playerMove2 = playerMoves.get(Player.TWO).get(0);
-
-        if (playerMove1.move() == playerMove2.move()) {
-            return null;
-        } else if (playerMove1.beats(playerMove2)) {
-            return Player.ONE;
-        } else {
-            return Player.TWO;
-        }
+    private Move moveOf(Player player) {
+        return player == Player.ONE ? player1Move : player2Move;
     }
 
-    @Accessors(fluent = true)
-    @Data
-    private static class PlayerMove {
-        private Player player;
-        private Move move;
-
-        static PlayerMove make(Player player, Move move) {
-            return new PlayerMove().move(move).player(player);
-        }
-
-        boolean isMadeBy(Player player) {
-            return this.player == player;
+    private static Player[][] winners() {
+        Move[] moves = Move.values();
+        Player[][] winners = new Player[moves.length][moves.length];
+        for (Move move1 : moves) {
+            for (Move move2 : moves) {
+                if (beats(move1, move2)) {
+                    winners[move1.ordinal()][move2.ordinal()] = Player.ONE;
+                } else if (beats(move2, move1)) {
+                    winners[move1.ordinal()][move2.ordinal()] = Player.TWO;
+                }
+            }
         }
+        return winners;
+    }
 
-        boolean beats(PlayerMove other) {
-            Move otherMove = other.move;
-            switch (this.move) {
-                case ROCK:
-                    return otherMove == SCISSORS;
-                case PAPER:
-                    return otherMove == ROCK;
-                case SCISSORS:
-                    return otherMove == PAPER;
-                default:
-                    return false;
-            }
+    private static boolean beats(Move move, Move otherMove) {
+        switch (move) {
+            case ROCK:
+                return otherMove == SCISSORS;
+            case PAPER:
+                return otherMove == ROCK;
+            case SCISSORS:
+                return otherMove == PAPER;
+            default:
+                return false;
         }
     }
-}
\ No newline at end of file
+}
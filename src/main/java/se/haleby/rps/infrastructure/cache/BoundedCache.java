@@ -0,0 +1,181 @@
+package se.haleby.rps.infrastructure.cache;
+
+import org.axonframework.common.caching.Cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-memory {@link Cache} holding at most a fixed number of entries, evicting the least recently used entry when
+ * full, and expiring entries that haven't been used for a while.
+ * <p>
+ * Entries are kept in access order, so idle entries are always found at the head and expiring them doesn't require a
+ * background thread. Access is synchronized, which is fine since it's short compared to the time an aggregate from
+ * the cache is locked while handling a command. Listeners are notified outside of the lock.
+ */
+public class BoundedCache implements Cache {
+    private final int maxSize;
+    private final long maxIdleNanos;
+    private final LongSupplier nanoTime;
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<EntryListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param maxSize       Maximum number of entries
+     * @param maxIdleMillis Time after which an entry that hasn't been read or written expires, 0 means never
+     */
+    public BoundedCache(int maxSize, long maxIdleMillis) {
+        this(maxSize, maxIdleMillis, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime Source of the time that idle entries are expired by, e.g. a fake clock in tests
+     */
+    BoundedCache(int maxSize, long maxIdleMillis, LongSupplier nanoTime) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be greater than 0 but was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.maxIdleNanos = maxIdleMillis <= 0 ? Long.MAX_VALUE : maxIdleMillis * 1_000_000;
+        this.nanoTime = nanoTime;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, V> V get(K key) {
+        List<Object> expired = new ArrayList<>(0);
+        Entry entry;
+        synchronized (this) {
+            expireIdleEntries(expired);
+            entry = entries.get(key);
+            if (entry != null) {
+                entry.lastAccessNanos = nanoTime.getAsLong();
+            }
+        }
+        notifyExpired(expired);
+        if (entry == null) {
+            return null;
+        }
+        listeners.forEach(listener -> listener.onEntryRead(key, entry.value));
+        return (V) entry.value;
+    }
+
+    @Override
+    public <V> void put(Object key, V value) {
+        List<Object> expired = new ArrayList<>(0);
+        Entry previous;
+        synchronized (this) {
+            previous = entries.put(key, new Entry(value, nanoTime.getAsLong()));
+            evict(expired);
+        }
+        if (previous == null) {
+            listeners.forEach(listener -> listener.onEntryCreated(key, value));
+        } else {
+            listeners.forEach(listener -> listener.onEntryUpdated(key, value));
+        }
+        notifyExpired(expired);
+    }
+
+    @Override
+    public boolean putIfAbsent(Object key, Object value) {
+        List<Object> expired = new ArrayList<>(0);
+        boolean absent;
+        synchronized (this) {
+            expireIdleEntries(expired);
+            absent = !entries.containsKey(key);
+            if (absent) {
+                entries.put(key, new Entry(value, nanoTime.getAsLong()));
+                evict(expired);
+            }
+        }
+        if (absent) {
+            listeners.forEach(listener -> listener.onEntryCreated(key, value));
+        }
+        notifyExpired(expired);
+        return absent;
+    }
+
+    @Override
+    public boolean remove(Object key) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(key) != null;
+        }
+        if (removed) {
+            listeners.forEach(listener -> listener.onEntryRemoved(key));
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        List<Object> expired = new ArrayList<>(0);
+        boolean contains;
+        synchronized (this) {
+            expireIdleEntries(expired);
+            contains = entries.containsKey(key);
+        }
+        notifyExpired(expired);
+        return contains;
+    }
+
+    @Override
+    public void registerCacheEntryListener(EntryListener cacheEntryListener) {
+        listeners.add(cacheEntryListener);
+    }
+
+    @Override
+    public void unregisterCacheEntryListener(EntryListener cacheEntryListener) {
+        listeners.remove(cacheEntryListener);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Must be called while holding the lock
+    private void evict(List<Object> expired) {
+        expireIdleEntries(expired);
+        Iterator<Object> leastRecentlyUsed = entries.keySet().iterator();
+        while (entries.size() > maxSize && leastRecentlyUsed.hasNext()) {
+            expired.add(leastRecentlyUsed.next());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    // Must be called while holding the lock
+    private void expireIdleEntries(List<Object> expired) {
+        if (maxIdleNanos == Long.MAX_VALUE) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        Iterator<Map.Entry<Object, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (leastRecentlyUsed.hasNext()) {
+            Map.Entry<Object, Entry> entry = leastRecentlyUsed.next();
+            if (now - entry.getValue().lastAccessNanos < maxIdleNanos) {
+                return;
+            }
+            expired.add(entry.getKey());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private void notifyExpired(List<Object> expired) {
+        expired.forEach(key -> listeners.forEach(listener -> listener.onEntryExpired(key)));
+    }
+
+    private static class Entry {
+        private final Object value;
+        private long lastAccessNanos;
+
+        private Entry(Object value, long lastAccessNanos) {
+            this.value = value;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+}
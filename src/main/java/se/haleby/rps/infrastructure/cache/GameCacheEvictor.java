@@ -0,0 +1,26 @@
+package se.haleby.rps.infrastructure.cache;
+
+import org.axonframework.common.caching.Cache;
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import se.haleby.rps.domain.event.GameEnded;
+
+/**
+ * Removes games from the aggregate cache as soon as they've ended, since no more commands are handled by an ended game
+ * and it would otherwise take up room in the cache until it's idle or pushed out by other games.
+ */
+@ProcessingGroup(GameCacheEvictor.PROCESSING_GROUP)
+public class GameCacheEvictor {
+    public static final String PROCESSING_GROUP = "game-cache";
+
+    private final Cache cache;
+
+    public GameCacheEvictor(Cache cache) {
+        this.cache = cache;
+    }
+
+    @EventHandler
+    public void when(GameEnded evt) {
+        cache.remove(evt.getGameId());
+    }
+}
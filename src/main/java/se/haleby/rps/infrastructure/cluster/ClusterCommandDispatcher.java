@@ -0,0 +1,40 @@
+package se.haleby.rps.infrastructure.cluster;
+
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.distributed.AnnotationRoutingStrategy;
+import org.axonframework.commandhandling.distributed.RoutingStrategy;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import se.haleby.rps.application.CommandDispatcher;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dispatches each command to the node of a cluster that owns the aggregate the command targets, as given by its
+ * {@code @TargetAggregateIdentifier}. Commands of games owned by this node are sent to the local command bus, and all
+ * other commands are sent to their node over HTTP. Since a game is only ever handled by one node, its aggregate can be
+ * cached in memory by that node just like when running a single node.
+ */
+public class ClusterCommandDispatcher implements CommandDispatcher {
+    private static final RoutingStrategy ROUTING_STRATEGY = new AnnotationRoutingStrategy();
+
+    private final ConsistentHash consistentHash;
+    private final String localNode;
+    private final CommandGateway localCommandGateway;
+    private final HttpCommandSender commandSender;
+
+    public ClusterCommandDispatcher(ConsistentHash consistentHash, String localNode, CommandGateway localCommandGateway, HttpCommandSender commandSender) {
+        if (!consistentHash.nodes().contains(localNode)) {
+            throw new IllegalArgumentException("Node " + localNode + " is not one of the nodes of the cluster: " + consistentHash.nodes());
+        }
+        this.consistentHash = consistentHash;
+        this.localNode = localNode;
+        this.localCommandGateway = localCommandGateway;
+        this.commandSender = commandSender;
+    }
+
+    @Override
+    public CompletableFuture<?> dispatch(Object command) {
+        String node = consistentHash.nodeOf(ROUTING_STRATEGY.getRoutingKey(GenericCommandMessage.asCommandMessage(command)));
+        return localNode.equals(node) ? localCommandGateway.send(command) : commandSender.send(node, command);
+    }
+}
@@ -0,0 +1,69 @@
+package se.haleby.rps.infrastructure.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import se.haleby.rps.domain.command.CreateGame;
+import se.haleby.rps.domain.command.MakeMove;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The commands that can be sent to another node of a cluster, and how they and their results are serialized to JSON
+ * on the way. Commands are sent as {@code POST} requests to {@link #PATH}{@code /<command type>}.
+ */
+public class ClusterCommands {
+    public static final String PATH = "/cluster/commands";
+
+    private static final Map<String, Class<?>> TYPES = Stream.of(CreateGame.class, MakeMove.class)
+            .collect(Collectors.toMap(Class::getSimpleName, Function.identity()));
+    // Results are versions, which must be longs also when they're small
+    private static final ObjectMapper JSON = new ObjectMapper().enable(DeserializationFeature.USE_LONG_FOR_INTS);
+
+    private ClusterCommands() {
+    }
+
+    public static String typeOf(Object command) {
+        String type = command.getClass().getSimpleName();
+        if (TYPES.get(type) != command.getClass()) {
+            throw new IllegalArgumentException("Command " + command.getClass().getName() + " can't be sent to other nodes");
+        }
+        return type;
+    }
+
+    public static Object deserializeCommand(String type, byte[] json) {
+        Class<?> commandClass = TYPES.get(type);
+        if (commandClass == null) {
+            throw new IllegalArgumentException("Unknown command type: " + type);
+        }
+        try {
+            return JSON.readValue(json, commandClass);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid " + type + " command: " + e.getMessage(), e);
+        }
+    }
+
+    public static Object deserializeResult(byte[] json) {
+        try {
+            return json.length == 0 ? null : JSON.readValue(json, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid command result", e);
+        }
+    }
+
+    /**
+     * Serializes a command or the result of a command.
+     */
+    public static byte[] serialize(Object value) {
+        try {
+            return JSON.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package se.haleby.rps.infrastructure.cluster;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps keys, such as game ids, to nodes placed at a number of pseudo-random points each on a hash ring. A key belongs
+ * to the node at the first point at or after the hash of the key, so adding or removing a node only moves the keys of
+ * that node, and having many points per node spreads the keys evenly.
+ * <p>
+ * The ring only depends on the set of nodes, not on the order in which they're supplied, so every node of a cluster
+ * configured with the same nodes agrees on which node owns a key.
+ */
+public class ConsistentHash {
+    public static final int DEFAULT_POINTS_PER_NODE = 128;
+
+    private final Set<String> nodes;
+    // Sorted hashes of the points on the ring and the node at each point
+    private final long[] points;
+    private final String[] nodeAtPoint;
+
+    public ConsistentHash(Collection<String> nodes) {
+        this(nodes, DEFAULT_POINTS_PER_NODE);
+    }
+
+    public ConsistentHash(Collection<String> nodes, int pointsPerNode) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        if (pointsPerNode <= 0) {
+            throw new IllegalArgumentException("Points per node must be greater than 0");
+        }
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : this.nodes) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                // Nodes are added in sorted order so the rare colliding point is resolved the same way everywhere
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        points = new long[ring.size()];
+        nodeAtPoint = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            nodeAtPoint[i] = point.getValue();
+            i++;
+        }
+    }
+
+    public String nodeOf(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Keys after the last point wrap around to the first point
+        return nodeAtPoint[index == points.length ? 0 : index];
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    // 64-bit FNV-1a followed by the finalizer of MurmurHash3, which spreads similar strings such as "node#1" and
+    // "node#2" over the whole ring
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
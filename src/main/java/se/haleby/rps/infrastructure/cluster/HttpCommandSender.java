@@ -0,0 +1,90 @@
+package se.haleby.rps.infrastructure.cluster;
+
+import org.axonframework.commandhandling.CommandExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends commands to other nodes of a cluster over HTTP. Requests are blocking, so they're sent by a pool of threads
+ * whose size bounds the number of commands in flight to other nodes, and connections are kept alive and reused by
+ * {@link HttpURLConnection}.
+ */
+public class HttpCommandSender implements AutoCloseable {
+    private final ExecutorService executor;
+    private final int timeoutMillis;
+
+    public HttpCommandSender(int threads, Duration timeout) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cluster-command-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeoutMillis = Math.toIntExact(timeout.toMillis());
+    }
+
+    /**
+     * @param node The base URL of the node, e.g. {@code http://localhost:8081}
+     * @return A future completed with the result of the command once the node has handled it
+     */
+    public CompletableFuture<Object> send(String node, Object command) {
+        String url = node + ClusterCommands.PATH + "/" + ClusterCommands.typeOf(command);
+        byte[] body = ClusterCommands.serialize(command);
+        return CompletableFuture.supplyAsync(() -> post(url, body), executor);
+    }
+
+    private Object post(String url, byte[] body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            // Read the whole response, also on errors, so that the connection can be reused
+            byte[] response = readFully(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (status >= 400) {
+                throw new CommandExecutionException("Command sent to " + url + " failed with status " + status + ": " + new String(response, StandardCharsets.UTF_8), null);
+            }
+            return ClusterCommands.deserializeResult(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to send command to " + url, e);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return new byte[0];
+        }
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
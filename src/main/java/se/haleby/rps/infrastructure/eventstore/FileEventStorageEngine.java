@@ -0,0 +1,450 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import org.axonframework.commandhandling.model.ConcurrencyException;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.GenericTrackedDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
+import org.axonframework.messaging.GenericMessage;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An {@link EventStorageEngine} that appends events to segmented, memory-mapped log files in a directory. Appends are
+ * sequential writes to the tail of the active segment and every event is indexed in memory both by global index (for
+ * tracking processors) and by aggregate identifier and sequence number (for event sourcing), so that loading an
+ * aggregate is a series of direct reads rather than a scan. The indexes are rebuilt from the segments on startup.
+ * <p>
+ * Snapshots are stored in the same log but are not part of the global event sequence. Only the latest snapshot of each
+ * aggregate is indexed.
+ */
+public class FileEventStorageEngine implements EventStorageEngine, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FileEventStorageEngine.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long NO_SNAPSHOT = -1;
+    private static final long SNAPSHOT_GLOBAL_INDEX = -1;
+
+    private static final byte EVENT = 0;
+    private static final byte DOMAIN_EVENT = 1;
+    private static final byte SNAPSHOT = 2;
+
+    private final Path directory;
+    private final Serializer serializer;
+    private final int segmentSize;
+    private final boolean syncOnAppend;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final LongArray globalPositions = new LongArray(1024);
+    private final Map<String, AggregateIndex> aggregates = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+
+    public FileEventStorageEngine(Path directory) {
+        this(directory, new XStreamSerializer(), DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param directory    The directory where segments are stored, created if it doesn't exist
+     * @param serializer   The serializer used for event payloads, snapshots and meta data
+     * @param segmentSize  The size in bytes of each segment file, which is also the upper bound of a single record
+     * @param syncOnAppend Whether to force written segments to disk before an append returns. Without it, events
+     *                     survive a crash of the process but not of the operating system.
+     */
+    public FileEventStorageEngine(Path directory, Serializer serializer, int segmentSize, boolean syncOnAppend) {
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.syncOnAppend = syncOnAppend;
+        recover();
+    }
+
+    // Writing
+
+    @Override
+    public void appendEvents(List<? extends EventMessage<?>> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // Serialize outside of the lock, only the actual writes need to be sequential
+        List<byte[]> records = events.stream().map(event -> encode(event, event instanceof DomainEventMessage ? DOMAIN_EVENT : EVENT)).collect(Collectors.toList());
+        // Verified before anything is written, so that the events are either all appended or not at all
+        records.forEach(this::verifyFitsInSegment);
+        synchronized (appendLock) {
+            verifySequenceNumbers(events);
+            List<Segment> touched = new ArrayList<>(1);
+            for (int i = 0; i < events.size(); i++) {
+                EventMessage<?> event = events.get(i);
+                long globalIndex = globalPositions.size();
+                long position = write(globalIndex, records.get(i), touched);
+                globalPositions.add(position);
+                if (event instanceof DomainEventMessage) {
+                    DomainEventMessage<?> domainEvent = (DomainEventMessage<?>) event;
+                    aggregates.computeIfAbsent(domainEvent.getAggregateIdentifier(), __ -> new AggregateIndex(domainEvent.getSequenceNumber())).add(position);
+                }
+            }
+            sync(touched);
+        }
+    }
+
+    @Override
+    public void storeSnapshot(DomainEventMessage<?> snapshot) {
+        byte[] record = encode(snapshot, SNAPSHOT);
+        synchronized (appendLock) {
+            List<Segment> touched = new ArrayList<>(1);
+            long position = write(SNAPSHOT_GLOBAL_INDEX, record, touched);
+            aggregates.computeIfAbsent(snapshot.getAggregateIdentifier(), __ -> new AggregateIndex(0)).snapshotPosition = position;
+            sync(touched);
+        }
+    }
+
+    private void verifySequenceNumbers(List<? extends EventMessage<?>> events) {
+        Map<String, Long> nextSequenceNumbers = new HashMap<>();
+        for (EventMessage<?> event : events) {
+            if (!(event instanceof DomainEventMessage)) {
+                continue;
+            }
+            DomainEventMessage<?> domainEvent = (DomainEventMessage<?>) event;
+            String aggregateIdentifier = domainEvent.getAggregateIdentifier();
+            long expected = nextSequenceNumbers.computeIfAbsent(aggregateIdentifier, id -> {
+                AggregateIndex index = aggregates.get(id);
+                return index == null || index.isEmpty() ? domainEvent.getSequenceNumber() : index.lastSequenceNumber() + 1;
+            });
+            if (domainEvent.getSequenceNumber() < expected) {
+                throw new ConcurrencyException(String.format("An event for aggregate [%s] at sequence [%d] was already inserted", aggregateIdentifier, domainEvent.getSequenceNumber()));
+            } else if (domainEvent.getSequenceNumber() > expected) {
+                throw new EventStoreException(String.format("Expected sequence number [%d] for aggregate [%s] but was [%d]", expected, aggregateIdentifier, domainEvent.getSequenceNumber()));
+            }
+            nextSequenceNumbers.put(aggregateIdentifier, expected + 1);
+        }
+    }
+
+    private void verifyFitsInSegment(byte[] record) {
+        if (Segment.HEADER_SIZE + record.length > segmentSize) {
+            throw new EventStoreException("Event of " + record.length + " bytes doesn't fit in a segment of " + segmentSize + " bytes");
+        }
+    }
+
+    private long write(long globalIndex, byte[] record, List<Segment> touched) {
+        verifyFitsInSegment(record);
+        Segment segment = activeSegment();
+        if (!segment.hasRoomFor(record.length)) {
+            segment = rollSegment();
+        }
+        if (!touched.contains(segment)) {
+            touched.add(segment);
+        }
+        int offset = segment.append(globalIndex, record);
+        return position(segment.id(), offset);
+    }
+
+    private void sync(List<Segment> touched) {
+        if (syncOnAppend) {
+            touched.forEach(Segment::flush);
+        }
+    }
+
+    private Segment activeSegment() {
+        return segments.isEmpty() ? rollSegment() : segments.get(segments.size() - 1);
+    }
+
+    private Segment rollSegment() {
+        int id = segments.size();
+        Segment segment = Segment.open(id, directory.resolve(segmentFileName(id)), segmentSize);
+        segments.add(segment);
+        log.debug("Opened event store segment {}", segment.path());
+        return segment;
+    }
+
+    // Reading
+
+    /**
+     * Reads the events stored after the token, up to the head of the store when the stream is created. The stream never
+     * blocks waiting for events that are appended later, whatever {@code mayBlock} says: like Axon's in-memory engine,
+     * this leaves waiting for new events to the event store, which opens another stream once they're appended.
+     */
+    @Override
+    public Stream<? extends TrackedEventMessage<?>> readEvents(TrackingToken trackingToken, boolean mayBlock) {
+        long from = trackingToken == null ? 0 : ((GlobalSequenceTrackingToken) trackingToken).getGlobalIndex() + 1;
+        int head = globalPositions.size();
+        return IntStream.range((int) Math.min(from, head), head).mapToObj(this::readTrackedEvent);
+    }
+
+    @Override
+    public DomainEventStream readEvents(String aggregateIdentifier, long firstSequenceNumber) {
+        AggregateIndex index = aggregates.get(aggregateIdentifier);
+        if (index == null || index.isEmpty()) {
+            return DomainEventStream.empty();
+        }
+        int size = index.positions.size();
+        int from = (int) Math.max(0, Math.min(firstSequenceNumber - index.firstSequenceNumber, size));
+        return DomainEventStream.of(IntStream.range(from, size).mapToObj(i -> (DomainEventMessage<?>) read(index.positions.get(i))));
+    }
+
+    @Override
+    public Optional<DomainEventMessage<?>> readSnapshot(String aggregateIdentifier) {
+        AggregateIndex index = aggregates.get(aggregateIdentifier);
+        if (index == null || index.snapshotPosition == NO_SNAPSHOT) {
+            return Optional.empty();
+        }
+        return Optional.of((DomainEventMessage<?>) read(index.snapshotPosition));
+    }
+
+    @Override
+    public Optional<Long> lastSequenceNumberFor(String aggregateIdentifier) {
+        AggregateIndex index = aggregates.get(aggregateIdentifier);
+        return index == null || index.isEmpty() ? Optional.empty() : Optional.of(index.lastSequenceNumber());
+    }
+
+    @Override
+    public TrackingToken createTailToken() {
+        return null;
+    }
+
+    @Override
+    public TrackingToken createHeadToken() {
+        int head = globalPositions.size();
+        return head == 0 ? null : new GlobalSequenceTrackingToken(head - 1);
+    }
+
+    @Override
+    public TrackingToken createTokenAt(Instant dateTime) {
+        int head = globalPositions.size();
+        for (int i = 0; i < head; i++) {
+            if (!read(globalPositions.get(i)).getTimestamp().isBefore(dateTime)) {
+                return i == 0 ? null : new GlobalSequenceTrackingToken(i - 1);
+            }
+        }
+        return createHeadToken();
+    }
+
+    private TrackedEventMessage<?> readTrackedEvent(int globalIndex) {
+        EventMessage<?> event = read(globalPositions.get(globalIndex));
+        GlobalSequenceTrackingToken token = new GlobalSequenceTrackingToken(globalIndex);
+        if (event instanceof DomainEventMessage) {
+            return new GenericTrackedDomainEventMessage<>(token, (DomainEventMessage<?>) event);
+        }
+        return new GenericTrackedEventMessage<>(token, event);
+    }
+
+    private EventMessage<?> read(long position) {
+        return decode(segments.get(segmentOf(position)).body(offsetOf(position)));
+    }
+
+    // Recovery
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().collect(Collectors.toList());
+            }
+            long start = System.currentTimeMillis();
+            for (int id = 0; id < files.size(); id++) {
+                Path path = files.get(id);
+                if (!path.getFileName().toString().equals(segmentFileName(id))) {
+                    throw new EventStoreException("Unexpected segment " + path + ", expected " + segmentFileName(id));
+                }
+                Segment segment = Segment.open(id, path, segmentSize);
+                segments.add(segment);
+                segment.recover((offset, globalIndex) -> index(segment, offset, globalIndex));
+            }
+            if (!segments.isEmpty()) {
+                log.info("Recovered {} events in {} segment(s) from {} in {} ms", globalPositions.size(), segments.size(), directory, System.currentTimeMillis() - start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event store in " + directory, e);
+        }
+    }
+
+    private void index(Segment segment, int offset, long globalIndex) {
+        long position = position(segment.id(), offset);
+        ByteBuffer body = segment.body(offset);
+        byte kind = body.get();
+        body.position(body.position() + Long.BYTES + Integer.BYTES);
+        skipString(body);
+        skipString(body);
+        String aggregateIdentifier = readString(body);
+        long sequenceNumber = body.getLong();
+        if (kind == SNAPSHOT) {
+            aggregates.computeIfAbsent(aggregateIdentifier, __ -> new AggregateIndex(0)).snapshotPosition = position;
+            return;
+        }
+        if (globalIndex != globalPositions.size()) {
+            throw new EventStoreException("Expected global index " + globalPositions.size() + " but found " + globalIndex + " in " + segment.path());
+        }
+        globalPositions.add(position);
+        if (kind == DOMAIN_EVENT) {
+            aggregates.computeIfAbsent(aggregateIdentifier, __ -> new AggregateIndex(sequenceNumber)).add(position);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            segments.forEach(Segment::close);
+        }
+    }
+
+    // Encoding
+    // | kind | timestamp seconds | timestamp nanos | identifier | aggregate type | aggregate identifier | sequence number
+    // | payload type | payload revision | payload | meta data type | meta data |
+
+    private byte[] encode(EventMessage<?> event, byte kind) {
+        SerializedObject<byte[]> payload = serializer.serialize(event.getPayload(), byte[].class);
+        SerializedObject<byte[]> metaData = event.getMetaData().isEmpty() ? null : serializer.serialize(event.getMetaData(), byte[].class);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + payload.getData().length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(kind);
+            out.writeLong(event.getTimestamp().getEpochSecond());
+            out.writeInt(event.getTimestamp().getNano());
+            writeString(out, event.getIdentifier());
+            if (event instanceof DomainEventMessage) {
+                DomainEventMessage<?> domainEvent = (DomainEventMessage<?>) event;
+                writeString(out, domainEvent.getType());
+                writeString(out, domainEvent.getAggregateIdentifier());
+                out.writeLong(domainEvent.getSequenceNumber());
+            } else {
+                writeString(out, null);
+                writeString(out, null);
+                out.writeLong(0);
+            }
+            writeString(out, payload.getType().getName());
+            writeString(out, payload.getType().getRevision());
+            writeBytes(out, payload.getData());
+            writeString(out, metaData == null ? null : metaData.getType().getName());
+            writeBytes(out, metaData == null ? null : metaData.getData());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private EventMessage<?> decode(ByteBuffer body) {
+        byte kind = body.get();
+        Instant timestamp = Instant.ofEpochSecond(body.getLong(), body.getInt());
+        String identifier = readString(body);
+        String type = readString(body);
+        String aggregateIdentifier = readString(body);
+        long sequenceNumber = body.getLong();
+        String payloadType = readString(body);
+        String payloadRevision = readString(body);
+        Object payload = serializer.deserialize(new SimpleSerializedObject<>(readBytes(body), byte[].class, payloadType, payloadRevision));
+        String metaDataType = readString(body);
+        byte[] metaDataBytes = readBytes(body);
+        MetaData metaData = metaDataBytes == null ? MetaData.emptyInstance() : serializer.deserialize(new SimpleSerializedObject<>(metaDataBytes, byte[].class, metaDataType, null));
+        if (kind == EVENT) {
+            return new GenericEventMessage<>(new GenericMessage<>(identifier, payload, metaData), timestamp);
+        }
+        return new GenericDomainEventMessage<>(type, aggregateIdentifier, sequenceNumber, payload, metaData, identifier, timestamp);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // Positions
+
+    private static String segmentFileName(int id) {
+        return String.format("%010d%s", id, SEGMENT_SUFFIX);
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private static class AggregateIndex {
+        private final long firstSequenceNumber;
+        private final LongArray positions = new LongArray();
+        private volatile long snapshotPosition = NO_SNAPSHOT;
+
+        private AggregateIndex(long firstSequenceNumber) {
+            this.firstSequenceNumber = firstSequenceNumber;
+        }
+
+        void add(long position) {
+            positions.add(position);
+        }
+
+        boolean isEmpty() {
+            return positions.isEmpty();
+        }
+
+        long lastSequenceNumber() {
+            return firstSequenceNumber + positions.size() - 1;
+        }
+    }
+}
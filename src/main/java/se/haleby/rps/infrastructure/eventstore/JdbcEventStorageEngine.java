@@ -0,0 +1,493 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import org.axonframework.commandhandling.model.ConcurrencyException;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.GenericTrackedDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
+import org.axonframework.messaging.GenericMessage;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An {@link EventStorageEngine} that stores events in a relational database through JDBC, typically an embedded H2
+ * database in a file that several game server processes share. Events are indexed by global index (the primary key,
+ * for tracking processors) and by aggregate identifier and sequence number (a unique index, for event sourcing), and
+ * the events of a unit of work are inserted as a single JDBC batch in one transaction.
+ * <p>
+ * Global indexes are assigned as the highest stored index plus one within the appending transaction, so a transaction
+ * can only insert an index once the previous one has been committed. Tracking processors can therefore never see a
+ * later event before an earlier one and the engine can use the same {@link GlobalSequenceTrackingToken}s as the other
+ * engines, without keeping track of gaps. Appends within a process are serialized by a lock, while an append that
+ * collides with an append of another process is retried after a random delay that grows with each attempt, since the
+ * database fails a colliding append at once rather than waiting for the other transaction to commit.
+ * <p>
+ * Only the latest snapshot of each aggregate is kept.
+ */
+public class JdbcEventStorageEngine implements EventStorageEngine, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(JdbcEventStorageEngine.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    private static final int MAX_APPEND_ATTEMPTS = 100;
+    private static final long MAX_APPEND_BACKOFF_MILLIS = 64;
+    private static final Set<String> CONFLICT_SQL_STATES = new HashSet<>(Arrays.asList("90131", "HYT00", "40001"));
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS domain_event (" +
+                    "global_index BIGINT NOT NULL PRIMARY KEY, " +
+                    "event_identifier VARCHAR(255) NOT NULL, " +
+                    "aggregate_type VARCHAR(255), " +
+                    "aggregate_identifier VARCHAR(255), " +
+                    "sequence_number BIGINT, " +
+                    "time_stamp_seconds BIGINT NOT NULL, " +
+                    "time_stamp_nanos INT NOT NULL, " +
+                    "payload_type VARCHAR(255) NOT NULL, " +
+                    "payload_revision VARCHAR(255), " +
+                    "payload VARBINARY NOT NULL, " +
+                    "meta_data_type VARCHAR(255), " +
+                    "meta_data VARBINARY)",
+            // Events that aren't domain events have no aggregate identifier, and nulls are never considered equal
+            "CREATE UNIQUE INDEX IF NOT EXISTS domain_event_aggregate ON domain_event (aggregate_identifier, sequence_number)",
+            "CREATE TABLE IF NOT EXISTS snapshot_event (" +
+                    "aggregate_identifier VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                    "event_identifier VARCHAR(255) NOT NULL, " +
+                    "aggregate_type VARCHAR(255), " +
+                    "sequence_number BIGINT NOT NULL, " +
+                    "time_stamp_seconds BIGINT NOT NULL, " +
+                    "time_stamp_nanos INT NOT NULL, " +
+                    "payload_type VARCHAR(255) NOT NULL, " +
+                    "payload_revision VARCHAR(255), " +
+                    "payload VARBINARY NOT NULL, " +
+                    "meta_data_type VARCHAR(255), " +
+                    "meta_data VARBINARY)"
+    };
+    private static final String COLUMNS = "event_identifier, aggregate_type, aggregate_identifier, sequence_number, time_stamp_seconds, time_stamp_nanos, payload_type, payload_revision, payload, meta_data_type, meta_data";
+    private static final String INSERT_EVENT = "INSERT INTO domain_event (global_index, " + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SNAPSHOT = "INSERT INTO snapshot_event (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SNAPSHOT = "DELETE FROM snapshot_event WHERE aggregate_identifier = ?";
+    private static final String SELECT_EVENTS_AFTER = "SELECT global_index, " + COLUMNS + " FROM domain_event WHERE global_index >= ? ORDER BY global_index LIMIT ?";
+    private static final String SELECT_AGGREGATE_EVENTS = "SELECT global_index, " + COLUMNS + " FROM domain_event WHERE aggregate_identifier = ? AND sequence_number >= ? ORDER BY sequence_number";
+    private static final String SELECT_SNAPSHOT = "SELECT 0, " + COLUMNS + " FROM snapshot_event WHERE aggregate_identifier = ?";
+    private static final String SELECT_EVENT_EXISTS = "SELECT 1 FROM domain_event WHERE aggregate_identifier = ? AND sequence_number = ?";
+    private static final String SELECT_LAST_SEQUENCE_NUMBER = "SELECT MAX(sequence_number) FROM domain_event WHERE aggregate_identifier = ?";
+    private static final String SELECT_HEAD = "SELECT MAX(global_index) FROM domain_event";
+    private static final String SELECT_FIRST_AT = "SELECT MIN(global_index) FROM domain_event WHERE time_stamp_seconds > ? OR (time_stamp_seconds = ? AND time_stamp_nanos >= ?)";
+
+    private final DataSource dataSource;
+    private final Serializer serializer;
+    private final int batchSize;
+    private final Runnable onClose;
+    private final Object appendLock = new Object();
+
+    /**
+     * Creates an engine storing events in an H2 database, with a pool of at most {@code maxConnections} connections.
+     * Use a URL with {@code AUTO_SERVER=TRUE}, e.g. {@code jdbc:h2:file:./data/events;AUTO_SERVER=TRUE}, to let
+     * several processes share a database file.
+     */
+    public static JdbcEventStorageEngine h2(String url, int maxConnections, Serializer serializer) {
+        JdbcConnectionPool connectionPool = JdbcConnectionPool.create(url, "sa", "");
+        connectionPool.setMaxConnections(maxConnections);
+        return new JdbcEventStorageEngine(connectionPool, serializer, DEFAULT_BATCH_SIZE, connectionPool::dispose);
+    }
+
+    /**
+     * @param dataSource The data source connections are taken from, preferably a connection pool
+     * @param serializer The serializer used for event payloads, snapshots and meta data
+     * @param batchSize  The number of events read per query by tracking processors
+     * @param onClose    Run when the engine is closed, e.g. to close the connection pool
+     */
+    public JdbcEventStorageEngine(DataSource dataSource, Serializer serializer, int batchSize, Runnable onClose) {
+        this.dataSource = dataSource;
+        this.serializer = serializer;
+        this.batchSize = batchSize;
+        this.onClose = onClose;
+        createSchema();
+    }
+
+    private void createSchema() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to create the event store schema", e);
+        }
+    }
+
+    // Writing
+
+    @Override
+    public void appendEvents(List<? extends EventMessage<?>> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // Serialize outside of the lock, only the inserts need to be sequential
+        List<Row> rows = events.stream().map(this::toRow).collect(Collectors.toList());
+        synchronized (appendLock) {
+            for (int attempt = 1; ; attempt++) {
+                if (tryAppend(rows)) {
+                    return;
+                }
+                if (attempt == MAX_APPEND_ATTEMPTS) {
+                    throw new EventStoreException("Failed to append events after " + attempt + " attempts, other processes keep appending at the same global indexes");
+                }
+                log.debug("Events were appended by another process at the same global indexes, retrying (attempt {})", attempt);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private static void backOff(int attempt) {
+        long maxDelayMillis = Math.min(MAX_APPEND_BACKOFF_MILLIS, 1L << Math.min(attempt, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelayMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventStoreException("Interrupted while waiting to append events again", e);
+        }
+    }
+
+    /**
+     * @return {@code false} if another process appended events at the same global indexes, so that it's worth trying
+     * again
+     */
+    private boolean tryAppend(List<Row> rows) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long globalIndex = head(connection) + 1;
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_EVENT)) {
+                    for (Row row : rows) {
+                        insert.setLong(1, globalIndex++);
+                        row.bind(insert, 2);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                verifySequenceNumbersAreUnused(connection, rows);
+                return false;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to append events", e);
+        }
+    }
+
+    private static void verifySequenceNumbersAreUnused(Connection connection, List<Row> rows) throws SQLException {
+        // Checking the first event of each aggregate is enough since events are appended in order
+        Set<String> checked = new HashSet<>();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_EVENT_EXISTS)) {
+            for (Row row : rows) {
+                if (row.aggregateIdentifier == null || !checked.add(row.aggregateIdentifier)) {
+                    continue;
+                }
+                select.setString(1, row.aggregateIdentifier);
+                select.setLong(2, row.sequenceNumber);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    if (resultSet.next()) {
+                        throw new ConcurrencyException(String.format("An event for aggregate [%s] at sequence [%d] was already inserted", row.aggregateIdentifier, row.sequenceNumber));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void storeSnapshot(DomainEventMessage<?> snapshot) {
+        Row row = toRow(snapshot);
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement delete = connection.prepareStatement(DELETE_SNAPSHOT); PreparedStatement insert = connection.prepareStatement(INSERT_SNAPSHOT)) {
+                delete.setString(1, row.aggregateIdentifier);
+                delete.executeUpdate();
+                row.bind(insert, 1);
+                insert.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to store snapshot of aggregate " + row.aggregateIdentifier, e);
+        }
+    }
+
+    // Reading
+
+    @Override
+    public Stream<? extends TrackedEventMessage<?>> readEvents(TrackingToken trackingToken, boolean mayBlock) {
+        long from = trackingToken == null ? 0 : ((GlobalSequenceTrackingToken) trackingToken).getGlobalIndex() + 1;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new TrackedEventIterator(from), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public DomainEventStream readEvents(String aggregateIdentifier, long firstSequenceNumber) {
+        List<EventMessage<?>> events = query(SELECT_AGGREGATE_EVENTS, statement -> {
+            statement.setString(1, aggregateIdentifier);
+            statement.setLong(2, firstSequenceNumber);
+        }, this::readEvent);
+        return DomainEventStream.of(events.stream().map(event -> (DomainEventMessage<?>) event));
+    }
+
+    @Override
+    public Optional<DomainEventMessage<?>> readSnapshot(String aggregateIdentifier) {
+        List<EventMessage<?>> snapshots = query(SELECT_SNAPSHOT, statement -> statement.setString(1, aggregateIdentifier), this::readEvent);
+        return snapshots.stream().findFirst().map(snapshot -> (DomainEventMessage<?>) snapshot);
+    }
+
+    @Override
+    public Optional<Long> lastSequenceNumberFor(String aggregateIdentifier) {
+        return Optional.ofNullable(queryForLong(SELECT_LAST_SEQUENCE_NUMBER, statement -> statement.setString(1, aggregateIdentifier)));
+    }
+
+    @Override
+    public TrackingToken createTailToken() {
+        return null;
+    }
+
+    @Override
+    public TrackingToken createHeadToken() {
+        Long head = queryForLong(SELECT_HEAD, statement -> {
+        });
+        return head == null ? null : new GlobalSequenceTrackingToken(head);
+    }
+
+    @Override
+    public TrackingToken createTokenAt(Instant dateTime) {
+        Long first = queryForLong(SELECT_FIRST_AT, statement -> {
+            statement.setLong(1, dateTime.getEpochSecond());
+            statement.setLong(2, dateTime.getEpochSecond());
+            statement.setInt(3, dateTime.getNano());
+        });
+        if (first == null) {
+            return createHeadToken();
+        }
+        return first == 0 ? null : new GlobalSequenceTrackingToken(first - 1);
+    }
+
+    private List<TrackedEventMessage<?>> readTrackedEvents(long from) {
+        return query(SELECT_EVENTS_AFTER, statement -> {
+            statement.setLong(1, from);
+            statement.setInt(2, batchSize);
+        }, resultSet -> {
+            EventMessage<?> event = readEvent(resultSet);
+            GlobalSequenceTrackingToken token = new GlobalSequenceTrackingToken(resultSet.getLong(1));
+            if (event instanceof DomainEventMessage) {
+                return new GenericTrackedDomainEventMessage<>(token, (DomainEventMessage<?>) event);
+            }
+            return new GenericTrackedEventMessage<>(token, event);
+        });
+    }
+
+    private static long head(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(SELECT_HEAD)) {
+            resultSet.next();
+            long head = resultSet.getLong(1);
+            return resultSet.wasNull() ? -1 : head;
+        }
+    }
+
+    private <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) {
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            binder.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<T> results = new ArrayList<>();
+                while (resultSet.next()) {
+                    results.add(mapper.map(resultSet));
+                }
+                return results;
+            }
+        } catch (SQLException e) {
+            throw new EventStoreException("Failed to read events", e);
+        }
+    }
+
+    private Long queryForLong(String sql, StatementBinder binder) {
+        List<Long> results = query(sql, binder, resultSet -> {
+            long value = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : value;
+        });
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * @return Whether an insert failed since a global index or sequence number was already in use, either by a committed
+     * event (integrity constraint violation) or by an event that another transaction hasn't committed yet (reported by
+     * H2 as a concurrent update, a lock timeout or a deadlock)
+     */
+    private static boolean isConflict(SQLException e) {
+        for (SQLException exception = e; exception != null; exception = exception.getNextException()) {
+            String sqlState = exception.getSQLState();
+            if (sqlState != null && (sqlState.startsWith("23") || CONFLICT_SQL_STATES.contains(sqlState))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+
+    // Mapping
+
+    private Row toRow(EventMessage<?> event) {
+        SerializedObject<byte[]> payload = serializer.serialize(event.getPayload(), byte[].class);
+        SerializedObject<byte[]> metaData = event.getMetaData().isEmpty() ? null : serializer.serialize(event.getMetaData(), byte[].class);
+        Row row = new Row();
+        row.eventIdentifier = event.getIdentifier();
+        if (event instanceof DomainEventMessage) {
+            DomainEventMessage<?> domainEvent = (DomainEventMessage<?>) event;
+            row.aggregateType = domainEvent.getType();
+            row.aggregateIdentifier = domainEvent.getAggregateIdentifier();
+            row.sequenceNumber = domainEvent.getSequenceNumber();
+        }
+        row.timestamp = event.getTimestamp();
+        row.payloadType = payload.getType().getName();
+        row.payloadRevision = payload.getType().getRevision();
+        row.payload = payload.getData();
+        row.metaDataType = metaData == null ? null : metaData.getType().getName();
+        row.metaData = metaData == null ? null : metaData.getData();
+        return row;
+    }
+
+    // Columns are read in the order of COLUMNS, after the global index
+    private EventMessage<?> readEvent(ResultSet resultSet) throws SQLException {
+        String identifier = resultSet.getString(2);
+        String type = resultSet.getString(3);
+        String aggregateIdentifier = resultSet.getString(4);
+        long sequenceNumber = resultSet.getLong(5);
+        Instant timestamp = Instant.ofEpochSecond(resultSet.getLong(6), resultSet.getInt(7));
+        Object payload = serializer.deserialize(new SimpleSerializedObject<>(resultSet.getBytes(10), byte[].class, resultSet.getString(8), resultSet.getString(9)));
+        byte[] metaDataBytes = resultSet.getBytes(12);
+        MetaData metaData = metaDataBytes == null ? MetaData.emptyInstance() : serializer.deserialize(new SimpleSerializedObject<>(metaDataBytes, byte[].class, resultSet.getString(11), null));
+        if (aggregateIdentifier == null) {
+            return new GenericEventMessage<>(new GenericMessage<>(identifier, payload, metaData), timestamp);
+        }
+        return new GenericDomainEventMessage<>(type, aggregateIdentifier, sequenceNumber, payload, metaData, identifier, timestamp);
+    }
+
+    private static class Row {
+        private String eventIdentifier;
+        private String aggregateType;
+        private String aggregateIdentifier;
+        private long sequenceNumber;
+        private Instant timestamp;
+        private String payloadType;
+        private String payloadRevision;
+        private byte[] payload;
+        private String metaDataType;
+        private byte[] metaData;
+
+        // Binds the values in the order of COLUMNS starting at the given parameter index
+        private void bind(PreparedStatement statement, int index) throws SQLException {
+            statement.setString(index, eventIdentifier);
+            statement.setString(index + 1, aggregateType);
+            statement.setString(index + 2, aggregateIdentifier);
+            if (aggregateIdentifier == null) {
+                statement.setNull(index + 3, Types.BIGINT);
+            } else {
+                statement.setLong(index + 3, sequenceNumber);
+            }
+            statement.setLong(index + 4, timestamp.getEpochSecond());
+            statement.setInt(index + 5, timestamp.getNano());
+            statement.setString(index + 6, payloadType);
+            statement.setString(index + 7, payloadRevision);
+            statement.setBytes(index + 8, payload);
+            statement.setString(index + 9, metaDataType);
+            statement.setBytes(index + 10, metaData);
+        }
+    }
+
+    /**
+     * Reads the events after a global index lazily, a batch at a time, until a batch isn't full.
+     */
+    private class TrackedEventIterator implements Iterator<TrackedEventMessage<?>> {
+        private long next;
+        private Iterator<TrackedEventMessage<?>> batch = Collections.emptyIterator();
+        private boolean lastBatch;
+
+        private TrackedEventIterator(long from) {
+            this.next = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!batch.hasNext() && !lastBatch) {
+                List<TrackedEventMessage<?>> events = readTrackedEvents(next);
+                lastBatch = events.size() < batchSize;
+                if (!events.isEmpty()) {
+                    next = ((GlobalSequenceTrackingToken) events.get(events.size() - 1).trackingToken()).getGlobalIndex() + 1;
+                }
+                batch = events.iterator();
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public TrackedEventMessage<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+}
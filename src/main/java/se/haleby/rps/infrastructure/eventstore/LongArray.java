@@ -0,0 +1,52 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive longs with a single writer and many readers. Readers only ever read indices below
+ * {@link #size()}, which is published after the value has been written, so they never observe a partially grown array.
+ */
+class LongArray {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile long[] values;
+    private volatile int size;
+
+    LongArray() {
+        this(INITIAL_CAPACITY);
+    }
+
+    LongArray(int initialCapacity) {
+        values = new long[Math.max(initialCapacity, 1)];
+    }
+
+    void add(long value) {
+        long[] current = values;
+        int index = size;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            values = current;
+        }
+        current[index] = value;
+        size = index + 1;
+    }
+
+    long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds (size " + size + ")");
+        }
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long last() {
+        return get(size - 1);
+    }
+}
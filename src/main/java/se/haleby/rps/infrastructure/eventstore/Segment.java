@@ -0,0 +1,145 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed size, memory-mapped log file. Each record is laid out as
+ * <pre>
+ * | length (int) | crc32 of body (int) | global index (long) | body (length bytes) |
+ * </pre>
+ * A length of zero marks the end of the written part of the segment (the file is zero-filled when created).
+ */
+class Segment implements AutoCloseable {
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private final int id;
+    private final Path path;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private Segment(int id, Path path, RandomAccessFile file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static Segment open(int id, Path path, int size) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            return new Segment(id, path, file, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment " + path, e);
+        }
+    }
+
+    int id() {
+        return id;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    boolean hasRoomFor(int bodyLength) {
+        return (long) writePosition + HEADER_SIZE + bodyLength <= buffer.capacity();
+    }
+
+    /**
+     * Appends a record and returns the offset in this segment where it was written. The body is written before the
+     * length, so a reader (or a recovery scan) never sees a length pointing at a partially written body.
+     */
+    int append(long globalIndex, byte[] body) {
+        int offset = writePosition;
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        ByteBuffer writer = buffer.duplicate();
+        writer.position(offset + Integer.BYTES);
+        writer.putInt((int) crc.getValue());
+        writer.putLong(globalIndex);
+        writer.put(body);
+        buffer.putInt(offset, body.length);
+        writePosition = offset + HEADER_SIZE + body.length;
+        return offset;
+    }
+
+    /**
+     * @return A read-only view of the body of the record at the given offset, positioned at the start of the body.
+     */
+    ByteBuffer body(int offset) {
+        ByteBuffer reader = buffer.duplicate();
+        int length = reader.getInt(offset);
+        reader.position(offset + HEADER_SIZE);
+        reader.limit(offset + HEADER_SIZE + length);
+        return reader.slice().asReadOnlyBuffer();
+    }
+
+    long globalIndex(int offset) {
+        return buffer.getLong(offset + Integer.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Scans the segment from the start and positions the write position after the last intact record. A record whose
+     * checksum doesn't match (a torn write) and everything after it is discarded.
+     *
+     * @param visitor Called with the offset and global index of each intact record
+     */
+    void recover(RecordVisitor visitor) {
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || (long) offset + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer body = body(offset);
+            byte[] bytes = new byte[length];
+            body.get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                break;
+            }
+            visitor.visit(offset, globalIndex(offset));
+            offset += HEADER_SIZE + length;
+        }
+        writePosition = offset;
+        // Wipe whatever is left of a torn write so that it can't be mistaken for a record later on
+        for (int i = offset; i < Math.min(offset + HEADER_SIZE, buffer.capacity()); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close segment " + path, e);
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(int offset, long globalIndex);
+    }
+}
@@ -0,0 +1,79 @@
+package se.haleby.rps.infrastructure.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A registry of timers and gauges, identified by a name and optional tags in the style of Micrometer, e.g.
+ * {@code commands.dispatch{command=MakeMove}}.
+ * <p>
+ * Timers are {@link LatencyHistogram}s, so recording is lock-free and doesn't allocate. Looking up a timer builds its
+ * identifier though, so timers used on hot paths should be looked up once and kept. Gauges are only evaluated when a
+ * {@link #snapshot()} is taken.
+ */
+public class Metrics {
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param tags Tag names and values, alternating
+     */
+    public LatencyHistogram timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), __ -> new LatencyHistogram());
+    }
+
+    /**
+     * @param tags Tag names and values, alternating
+     */
+    public void gauge(String name, Supplier<? extends Number> value, String... tags) {
+        gauges.put(id(name, tags), value);
+    }
+
+    /**
+     * @return The current values of all metrics by identifier, with durations of timers in milliseconds
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> timerValues = new TreeMap<>();
+        timers.forEach((id, timer) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", timer.count());
+            values.put("mean", millis(timer.meanNanos()));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                values.put(PERCENTILE_NAMES[i], millis(timer.percentileNanos(PERCENTILES[i])));
+            }
+            values.put("max", millis(timer.maxNanos()));
+            timerValues.put(id, values);
+        });
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        gauges.forEach((id, value) -> gaugeValues.put(id, value.get()));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timers", timerValues);
+        snapshot.put("gauges", gaugeValues);
+        return snapshot;
+    }
+
+    private static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be pairs of names and values but was " + String.join(", ", tags));
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            id.append(i == 0 ? "" : ",").append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1e6;
+    }
+}
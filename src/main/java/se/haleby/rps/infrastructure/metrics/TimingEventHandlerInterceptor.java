@@ -0,0 +1,37 @@
+package se.haleby.rps.infrastructure.metrics;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times the event handlers of an event processor, per type of event, as {@code projection.events{processor=..,event=..}}.
+ */
+public class TimingEventHandlerInterceptor implements MessageHandlerInterceptor<EventMessage<?>> {
+    private final Metrics metrics;
+    private final String processorName;
+    private final Map<Class<?>, LatencyHistogram> timers = new ConcurrentHashMap<>();
+
+    public TimingEventHandlerInterceptor(Metrics metrics, String processorName) {
+        this.metrics = metrics;
+        this.processorName = processorName;
+    }
+
+    @Override
+    public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain interceptorChain) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return interceptorChain.proceed();
+        } finally {
+            timers.computeIfAbsent(unitOfWork.getMessage().getPayloadType(), this::timerOf).recordSince(start);
+        }
+    }
+
+    private LatencyHistogram timerOf(Class<?> eventType) {
+        return metrics.timer("projection.events", "processor", processorName, "event", eventType.getSimpleName());
+    }
+}
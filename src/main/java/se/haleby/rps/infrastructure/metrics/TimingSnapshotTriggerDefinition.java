@@ -0,0 +1,53 @@
+package se.haleby.rps.infrastructure.metrics;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventsourcing.SnapshotTrigger;
+import org.axonframework.eventsourcing.SnapshotTriggerDefinition;
+
+/**
+ * Times how long it takes to load an event sourced aggregate, i.e. to read its snapshot and events and replay them, as
+ * {@code aggregate.load{type=..}}.
+ * <p>
+ * The repository prepares a snapshot trigger before reading the events of an aggregate and tells it when the aggregate
+ * has been initialized from them, which makes a trigger a convenient place to measure loading. Newly created aggregates
+ * are never initialized from events so they aren't timed.
+ */
+public class TimingSnapshotTriggerDefinition implements SnapshotTriggerDefinition {
+    private final SnapshotTriggerDefinition delegate;
+    private final Metrics metrics;
+
+    public TimingSnapshotTriggerDefinition(SnapshotTriggerDefinition delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public SnapshotTrigger prepareTrigger(Class<?> aggregateType) {
+        return new TimingSnapshotTrigger(delegate.prepareTrigger(aggregateType), metrics.timer("aggregate.load", "type", aggregateType.getSimpleName()));
+    }
+
+    private static class TimingSnapshotTrigger implements SnapshotTrigger {
+        private final SnapshotTrigger delegate;
+        // Triggers may be serialized along with a cached aggregate, the timer isn't needed after loading anyway
+        private final transient LatencyHistogram timer;
+        private final long startNanos = System.nanoTime();
+
+        private TimingSnapshotTrigger(SnapshotTrigger delegate, LatencyHistogram timer) {
+            this.delegate = delegate;
+            this.timer = timer;
+        }
+
+        @Override
+        public void eventHandled(EventMessage<?> msg) {
+            delegate.eventHandled(msg);
+        }
+
+        @Override
+        public void initializationFinished() {
+            delegate.initializationFinished();
+            if (timer != null) {
+                timer.recordSince(startNanos);
+            }
+        }
+    }
+}
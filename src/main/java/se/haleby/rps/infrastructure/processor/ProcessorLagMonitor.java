@@ -0,0 +1,74 @@
+package se.haleby.rps.infrastructure.processor;
+
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of how far a tracking processor lags behind the head of the event stream, as the number of events
+ * between the newest stored event and the oldest token of the processor's segments. The lag is logged periodically
+ * while the processor is behind.
+ */
+public class ProcessorLagMonitor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ProcessorLagMonitor.class);
+    private static final long NO_EVENT = -1;
+
+    private final String processorName;
+    private final TokenStore tokenStore;
+    private final EventStorageEngine eventStorageEngine;
+    private final ScheduledExecutorService scheduler;
+
+    public ProcessorLagMonitor(String processorName, TokenStore tokenStore, EventStorageEngine eventStorageEngine, long logIntervalMillis) {
+        this.processorName = processorName;
+        this.tokenStore = tokenStore;
+        this.eventStorageEngine = eventStorageEngine;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lag-monitor-" + processorName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::logLag, logIntervalMillis, logIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public String processorName() {
+        return processorName;
+    }
+
+    /**
+     * @return The number of stored events that haven't been processed by all segments of the processor yet
+     */
+    public long lag() {
+        long head = globalIndexOf(eventStorageEngine.createHeadToken());
+        int[] segments = tokenStore.fetchSegments(processorName);
+        long oldestProcessed = Arrays.stream(segments).mapToLong(segment -> globalIndexOf(tokenStore.fetchToken(processorName, segment))).min().orElse(NO_EVENT);
+        return Math.max(0, head - oldestProcessed);
+    }
+
+    private void logLag() {
+        try {
+            long lag = lag();
+            if (lag > 0) {
+                log.info("Processor {} is {} event(s) behind", processorName, lag);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to determine lag of processor {}", processorName, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static long globalIndexOf(TrackingToken token) {
+        return token instanceof GlobalSequenceTrackingToken ? ((GlobalSequenceTrackingToken) token).getGlobalIndex() : NO_EVENT;
+    }
+}
@@ -0,0 +1,77 @@
+package se.haleby.rps.infrastructure.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Periodically writes a checkpoint of a projection, and a final one when closed, which should be done once the event
+ * processors have been shut down.
+ * <p>
+ * Each checkpoint is written at the position observed one interval earlier, since a subscribing processor handles events
+ * only after they have been stored, so the head of the event store may include events that haven't been applied yet.
+ * Events applied after the position of a checkpoint are replayed again when it's restored, which the projection must
+ * therefore tolerate.
+ */
+public class ProjectionCheckpointer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ProjectionCheckpointer.class);
+    private static final long NO_POSITION = Long.MIN_VALUE;
+
+    private final String projectionName;
+    private final LongSupplier position;
+    private final LongConsumer writeCheckpoint;
+    private final ScheduledExecutorService scheduler;
+    // Only accessed by the scheduler thread, and by close once the scheduler has terminated
+    private long observedPosition = NO_POSITION;
+    private long writtenPosition = NO_POSITION;
+
+    /**
+     * @param position        The global index of an event up to which the projection has applied all events
+     * @param writeCheckpoint Writes a checkpoint at a position
+     */
+    public ProjectionCheckpointer(String projectionName, LongSupplier position, LongConsumer writeCheckpoint, long intervalMillis) {
+        this.projectionName = projectionName;
+        this.position = position;
+        this.writeCheckpoint = writeCheckpoint;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpointer-" + projectionName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkpoint, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        write(position.getAsLong());
+    }
+
+    private void checkpoint() {
+        try {
+            long previouslyObserved = observedPosition;
+            observedPosition = position.getAsLong();
+            if (previouslyObserved != NO_POSITION) {
+                write(previouslyObserved);
+            }
+        } catch (Exception e) {
+            log.error("Failed to write checkpoint of {}", projectionName, e);
+        }
+    }
+
+    private void write(long checkpointPosition) {
+        if (checkpointPosition == writtenPosition) {
+            return;
+        }
+        long start = System.nanoTime();
+        writeCheckpoint.accept(checkpointPosition);
+        writtenPosition = checkpointPosition;
+        log.info("Wrote checkpoint of {} at position {} in {} ms", projectionName, checkpointPosition, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,173 @@
+package se.haleby.rps.infrastructure.processor;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.axonframework.eventhandling.AnnotationEventListenerAdapter;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds projections by replaying all stored events to their event handlers in parallel, which is much faster than
+ * letting an event processor handle the events one at a time.
+ * <p>
+ * The event stream is read in batches and the events of each batch are partitioned by aggregate identifier, i.e. by game
+ * id. The partitions of a batch are applied concurrently on a fork-join pool, each partition in event order, so the
+ * events of a game are always applied in order while the events of different games may be applied in any order. This is
+ * the same guarantee as tracking processors with several segments give, so projections that can be updated by such
+ * processors can be rebuilt as well.
+ */
+public class ProjectionReplayer {
+    private static final Logger log = LoggerFactory.getLogger(ProjectionReplayer.class);
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final long NO_EVENT = -1;
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final EventStorageEngine eventStorageEngine;
+    private final int parallelism;
+    private final int batchSize;
+
+    public ProjectionReplayer(EventStorageEngine eventStorageEngine, int parallelism, int batchSize) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be positive but were " + parallelism + " and " + batchSize);
+        }
+        this.eventStorageEngine = eventStorageEngine;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Replay all events stored when the replay starts to the event handlers of the projections, which should be fresh
+     * instances that aren't used by anyone else until the replay is done.
+     */
+    public Replay replay(Object... projections) {
+        return replayAfter(null, projections);
+    }
+
+    /**
+     * Replay the events stored after a token, e.g. to bring projections restored from a checkpoint up to date.
+     *
+     * @param after The token of the last event not to replay, or {@code null} to replay all events
+     */
+    public Replay replayAfter(TrackingToken after, Object... projections) {
+        List<AnnotationEventListenerAdapter> eventHandlers = Arrays.stream(projections).map(AnnotationEventListenerAdapter::new).collect(Collectors.toList());
+        long total = Math.max(0, globalIndexOf(eventStorageEngine.createHeadToken()) - globalIndexOf(after));
+        long start = System.nanoTime();
+        long lastProgressLog = start;
+        long replayed = 0;
+        TrackingToken lastToken = after;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (Stream<? extends TrackedEventMessage<?>> events = eventStorageEngine.readEvents(after, false)) {
+            Iterator<? extends TrackedEventMessage<?>> iterator = events.iterator();
+            // Events appended after the replay started are left to the event processors
+            while (iterator.hasNext() && replayed < total) {
+                List<List<EventMessage<?>>> partitions = newPartitions();
+                int batched = 0;
+                while (batched < batchSize && iterator.hasNext() && replayed + batched < total) {
+                    TrackedEventMessage<?> event = iterator.next();
+                    partitions.get(partitionOf(event)).add(event);
+                    lastToken = event.trackingToken();
+                    batched++;
+                }
+                apply(pool, eventHandlers, partitions);
+                replayed += batched;
+
+                long now = System.nanoTime();
+                if (now - lastProgressLog >= PROGRESS_LOG_INTERVAL_NANOS) {
+                    log.info("Replayed {} of {} events ({} events/s)", replayed, total, eventsPerSecond(replayed, now - start));
+                    lastProgressLog = now;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Replay replay = new Replay(replayed, lastToken, Duration.ofNanos(System.nanoTime() - start));
+        log.info("Replayed {} events in {} ms using {} threads ({} events/s)", replay.events(), replay.duration().toMillis(), parallelism, replay.eventsPerSecond());
+        return replay;
+    }
+
+    private List<List<EventMessage<?>>> newPartitions() {
+        List<List<EventMessage<?>>> partitions = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            partitions.add(new ArrayList<>(batchSize / parallelism + 1));
+        }
+        return partitions;
+    }
+
+    private int partitionOf(EventMessage<?> event) {
+        return event instanceof DomainEventMessage ? Math.floorMod(((DomainEventMessage<?>) event).getAggregateIdentifier().hashCode(), parallelism) : 0;
+    }
+
+    private static void apply(ForkJoinPool pool, List<AnnotationEventListenerAdapter> eventHandlers, List<List<EventMessage<?>>> partitions) {
+        List<Callable<Void>> tasks = partitions.stream()
+                .filter(partition -> !partition.isEmpty())
+                .map(partition -> (Callable<Void>) () -> {
+                    for (EventMessage<?> event : partition) {
+                        for (AnnotationEventListenerAdapter eventHandler : eventHandlers) {
+                            eventHandler.handle(event);
+                        }
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+        for (Future<Void> task : pool.invokeAll(tasks)) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to replay events", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying events", e);
+            }
+        }
+    }
+
+    private static long eventsPerSecond(long events, long nanos) {
+        return nanos == 0 ? 0 : events * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    private static long globalIndexOf(TrackingToken token) {
+        if (token == null) {
+            return NO_EVENT;
+        } else if (token instanceof GlobalSequenceTrackingToken) {
+            return ((GlobalSequenceTrackingToken) token).getGlobalIndex();
+        }
+        throw new IllegalArgumentException("Unsupported tracking token: " + token.getClass().getName());
+    }
+
+    /**
+     * The outcome of a replay, where {@code lastToken} is the token of the last replayed event, or the token the replay
+     * started after if there were no events, i.e. the token event processors should continue from.
+     */
+    @Data
+    @Accessors(fluent = true)
+    public static class Replay {
+        private final long events;
+        private final TrackingToken lastToken;
+        private final Duration duration;
+
+        public long eventsPerSecond() {
+            return ProjectionReplayer.eventsPerSecond(events, duration.toNanos());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package se.haleby.rps.infrastructure.serialization;
+
+import org.axonframework.serialization.Converter;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.SerializedType;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.axonframework.serialization.SimpleSerializedType;
+import org.axonframework.serialization.UnknownSerializedTypeException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Serializer} writing events that have an {@link EventCodec} in a compact binary form, and delegating
+ * everything else, such as meta data and snapshots, to another serializer.
+ * <p>
+ * Events are stored with the codec name as type, rather than the class name, and the codec version as revision. So
+ * events written by the delegate before this serializer was introduced, which have the class name as type, are still
+ * read by the delegate. Events of an older version are upcast before they're read.
+ */
+public class BinaryEventSerializer implements Serializer {
+    private final Serializer delegate;
+    private final Map<Class<?>, EventCodec<?>> codecsByType = new HashMap<>();
+    private final Map<String, EventCodec<?>> codecsByName = new HashMap<>();
+    // codec name -> version -> upcaster from that version
+    private final Map<String, Map<Integer, Upcaster>> upcasters = new HashMap<>();
+
+    public BinaryEventSerializer(Serializer delegate) {
+        this(delegate, GameEventCodecs.ALL, GameEventCodecs.UPCASTERS);
+    }
+
+    public BinaryEventSerializer(Serializer delegate, List<EventCodec<?>> codecs, List<Upcaster> upcasters) {
+        this.delegate = delegate;
+        for (EventCodec<?> codec : codecs) {
+            codecsByType.put(codec.type(), codec);
+            codecsByName.put(codec.name(), codec);
+        }
+        for (Upcaster upcaster : upcasters) {
+            this.upcasters.computeIfAbsent(upcaster.type(), __ -> new HashMap<>()).put(upcaster.fromVersion(), upcaster);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> SerializedObject<T> serialize(Object object, Class<T> expectedRepresentation) {
+        EventCodec<Object> codec = object == null ? null : (EventCodec<Object>) codecsByType.get(object.getClass());
+        if (codec == null) {
+            return delegate.serialize(object, expectedRepresentation);
+        }
+        BinaryWriter out = new BinaryWriter();
+        codec.write(object, out);
+        T data = getConverter().convert(out.toByteArray(), byte[].class, expectedRepresentation);
+        return new SimpleSerializedObject<>(data, expectedRepresentation, typeOf(codec));
+    }
+
+    @Override
+    public <T> boolean canSerializeTo(Class<T> expectedRepresentation) {
+        return delegate.canSerializeTo(expectedRepresentation);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <S, T> T deserialize(SerializedObject<S> serializedObject) {
+        EventCodec<?> codec = codecsByName.get(serializedObject.getType().getName());
+        if (codec == null) {
+            return delegate.deserialize(serializedObject);
+        }
+        byte[] bytes = getConverter().convert(serializedObject.getData(), serializedObject.getContentType(), byte[].class);
+        int version = versionOf(serializedObject.getType());
+        for (; version < codec.version(); version++) {
+            Upcaster upcaster = upcasters.getOrDefault(codec.name(), Collections.emptyMap()).get(version);
+            if (upcaster == null) {
+                throw new IllegalStateException("No upcaster of " + codec.name() + " from version " + version + " to " + codec.version());
+            }
+            bytes = upcaster.upcast(bytes);
+        }
+        if (version > codec.version()) {
+            throw new IllegalStateException("Can't read version " + version + " of " + codec.name() + " since the latest known version is " + codec.version());
+        }
+        return (T) codec.read(new BinaryReader(bytes));
+    }
+
+    @Override
+    public Class classForType(SerializedType type) throws UnknownSerializedTypeException {
+        EventCodec<?> codec = codecsByName.get(type.getName());
+        return codec == null ? delegate.classForType(type) : codec.type();
+    }
+
+    @Override
+    public SerializedType typeForClass(Class type) {
+        EventCodec<?> codec = codecsByType.get(type);
+        return codec == null ? delegate.typeForClass(type) : typeOf(codec);
+    }
+
+    @Override
+    public Converter getConverter() {
+        return delegate.getConverter();
+    }
+
+    private static SerializedType typeOf(EventCodec<?> codec) {
+        return new SimpleSerializedType(codec.name(), String.valueOf(codec.version()));
+    }
+
+    private static int versionOf(SerializedType type) {
+        return type.getRevision() == null ? 1 : Integer.parseInt(type.getRevision());
+    }
+}
@@ -0,0 +1,68 @@
+package se.haleby.rps.infrastructure.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads values written by a {@link BinaryWriter}.
+ */
+public class BinaryReader {
+    private final byte[] bytes;
+    private int position;
+
+    public BinaryReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = next();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at position " + position);
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = next();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at position " + position);
+    }
+
+    public String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (position + length > bytes.length) {
+            throw new IllegalStateException("String of " + length + " bytes at position " + position + " exceeds the " + bytes.length + " bytes read");
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        int ordinal = readVarInt() - 1;
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    public boolean hasRemaining() {
+        return position < bytes.length;
+    }
+
+    private byte next() {
+        if (position >= bytes.length) {
+            throw new IllegalStateException("Unexpected end of the " + bytes.length + " bytes read");
+        }
+        return bytes[position++];
+    }
+}
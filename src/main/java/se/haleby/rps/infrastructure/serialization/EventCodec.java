@@ -0,0 +1,51 @@
+package se.haleby.rps.infrastructure.serialization;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Writes and reads events of a single type for the {@link BinaryEventSerializer}. The name is what's stored as the
+ * serialized type of an event, and the version is stored as its revision. When the binary format of an event changes
+ * the version is increased and an {@link Upcaster} from the previous version is added, since the codec only reads its
+ * current version.
+ */
+public interface EventCodec<T> {
+    Class<T> type();
+
+    String name();
+
+    int version();
+
+    void write(T event, BinaryWriter out);
+
+    T read(BinaryReader in);
+
+    static <T> EventCodec<T> of(Class<T> type, String name, int version, BiConsumer<T, BinaryWriter> writer, Function<BinaryReader, T> reader) {
+        return new EventCodec<T>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public int version() {
+                return version;
+            }
+
+            @Override
+            public void write(T event, BinaryWriter out) {
+                writer.accept(event, out);
+            }
+
+            @Override
+            public T read(BinaryReader in) {
+                return reader.apply(in);
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package se.haleby.rps.infrastructure.serialization;
+
+import se.haleby.rps.domain.event.*;
+import se.haleby.rps.domain.model.Move;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Codecs of the events of a game. Player ids are interned when read, since the same few players appear in all events
+ * of a game and in many games.
+ */
+public class GameEventCodecs {
+    private static final Move[] MOVES = Move.values();
+
+    public static final List<EventCodec<?>> ALL = Collections.unmodifiableList(Arrays.asList(
+            EventCodec.of(GameCreated.class, "GameCreated", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeString(evt.getCreatedBy()).writeVarInt(evt.getRounds()).writeVarLong(evt.getCreatedAt().getTime()),
+                    in -> GameCreated.builder().gameId(in.readString()).createdBy(readPlayer(in)).rounds(in.readVarInt()).createdAt(new Date(in.readVarLong())).build()),
+            EventCodec.of(FirstPlayerJoinedGame.class, "FirstPlayerJoinedGame", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeString(evt.getPlayer()),
+                    in -> FirstPlayerJoinedGame.builder().gameId(in.readString()).player(readPlayer(in)).build()),
+            EventCodec.of(SecondPlayerJoinedGame.class, "SecondPlayerJoinedGame", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeString(evt.getPlayer()),
+                    in -> SecondPlayerJoinedGame.builder().gameId(in.readString()).player(readPlayer(in)).build()),
+            EventCodec.of(RoundStarted.class, "RoundStarted", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRoundNumber()),
+                    in -> RoundStarted.builder().gameId(in.readString()).roundNumber(in.readVarInt()).build()),
+            EventCodec.of(MoveMade.class, "MoveMade", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRound()).writeString(evt.getPlayer()).writeEnum(evt.getMove()),
+                    in -> MoveMade.builder().gameId(in.readString()).round(in.readVarInt()).player(readPlayer(in)).move(in.readEnum(MOVES)).build()),
+            EventCodec.of(RoundWon.class, "RoundWon", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRoundNumber()).writeString(evt.getWinner()),
+                    in -> RoundWon.builder().gameId(in.readString()).roundNumber(in.readVarInt()).winner(readPlayer(in)).build()),
+            EventCodec.of(RoundTied.class, "RoundTied", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRoundNumber()),
+                    in -> RoundTied.builder().gameId(in.readString()).roundNumber(in.readVarInt()).build()),
+            EventCodec.of(RoundEnded.class, "RoundEnded", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRoundNumber()),
+                    in -> RoundEnded.builder().gameId(in.readString()).roundNumber(in.readVarInt()).build()),
+            EventCodec.of(GameWon.class, "GameWon", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeString(evt.getWinner()),
+                    in -> GameWon.builder().gameId(in.readString()).winner(readPlayer(in)).build()),
+            EventCodec.of(GameTied.class, "GameTied", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()),
+                    in -> GameTied.withGameId(in.readString())),
+            EventCodec.of(GameEnded.class, "GameEnded", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()),
+                    in -> GameEnded.withGameId(in.readString()))
+    ));
+
+    // There are no upcasters yet since all events are still at their first version
+    public static final List<Upcaster> UPCASTERS = Collections.emptyList();
+
+    private GameEventCodecs() {
+    }
+
+    private static String readPlayer(BinaryReader in) {
+        String player = in.readString();
+        return player == null ? null : player.intern();
+    }
+}
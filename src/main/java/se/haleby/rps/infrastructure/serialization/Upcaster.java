@@ -0,0 +1,19 @@
+package se.haleby.rps.infrastructure.serialization;
+
+/**
+ * Converts the binary form of an event from one version to the next, so that events stored before the format of an
+ * event changed can still be read. Upcasters are chained until the current version of the event's codec is reached.
+ */
+public interface Upcaster {
+    /**
+     * @return The name of the serialized type this upcaster applies to, as returned by {@link EventCodec#name()}
+     */
+    String type();
+
+    /**
+     * @return The version of the events this upcaster reads, it returns events of the next version
+     */
+    int fromVersion();
+
+    byte[] upcast(byte[] event);
+}
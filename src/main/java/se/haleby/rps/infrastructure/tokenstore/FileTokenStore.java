@@ -0,0 +1,169 @@
+package se.haleby.rps.infrastructure.tokenstore;
+
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.TrackingToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TokenStore} for a single node that keeps the tokens of all processors in a properties file, one line per
+ * processor and segment with the global index of the last processed event ({@code -1} before the first event).
+ * <p>
+ * Tokens are stored after every batch of events a processor handles, so instead of writing the file each time it's
+ * written at a fixed interval and when the store is closed. After a crash a processor may therefore handle some events
+ * again. Only {@link GlobalSequenceTrackingToken}s, as created by the event storage engines used by the game server,
+ * are supported.
+ */
+public class FileTokenStore implements TokenStore, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(FileTokenStore.class);
+    private static final long NO_TOKEN = -1;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final Path file;
+    // processor name -> segment -> global index
+    private final Map<String, Map<Integer, Long>> tokens = new TreeMap<>();
+    private final ScheduledExecutorService flusher;
+    private boolean dirty;
+
+    public FileTokenStore(Path file) {
+        this.file = file;
+        load();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void initializeTokenSegments(String processorName, int segmentCount) {
+        initializeTokenSegments(processorName, segmentCount, null);
+    }
+
+    @Override
+    public synchronized void initializeTokenSegments(String processorName, int segmentCount, TrackingToken initialToken) {
+        if (tokens.containsKey(processorName)) {
+            throw new UnableToClaimTokenException("Could not initialize segments. Some segments were already present for processor " + processorName);
+        }
+        Map<Integer, Long> segments = new TreeMap<>();
+        for (int segment = 0; segment < segmentCount; segment++) {
+            segments.put(segment, globalIndexOf(initialToken));
+        }
+        tokens.put(processorName, segments);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void storeToken(TrackingToken token, String processorName, int segment) {
+        tokens.computeIfAbsent(processorName, __ -> new TreeMap<>()).put(segment, globalIndexOf(token));
+        dirty = true;
+    }
+
+    @Override
+    public synchronized TrackingToken fetchToken(String processorName, int segment) {
+        Map<Integer, Long> segments = tokens.get(processorName);
+        if (segments == null || !segments.containsKey(segment)) {
+            if (segments == null && segment == 0) {
+                // Processors that don't initialize their segments start with a single segment
+                storeToken(null, processorName, segment);
+                return null;
+            }
+            throw new UnableToClaimTokenException("No token was found for segment " + segment + " of processor " + processorName);
+        }
+        return tokenOf(segments.get(segment));
+    }
+
+    @Override
+    public void releaseClaim(String processorName, int segment) {
+        // Claims aren't needed since there's only a single node using the store
+    }
+
+    @Override
+    public synchronized int[] fetchSegments(String processorName) {
+        Map<Integer, Long> segments = tokens.get(processorName);
+        return segments == null ? new int[0] : segments.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Removes the tokens of a processor, so that it starts over from the beginning of the event stream.
+     */
+    public synchronized void reset(String processorName) {
+        if (tokens.remove(processorName) != null) {
+            dirty = true;
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        Properties properties = new Properties();
+        tokens.forEach((processorName, segments) -> segments.forEach((segment, globalIndex) -> properties.setProperty(processorName + "." + segment, String.valueOf(globalIndex))));
+        try {
+            Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Tracking tokens");
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            log.error("Failed to write tokens to {}", file, e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read tokens from " + file, e);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            int separator = key.lastIndexOf('.');
+            String processorName = key.substring(0, separator);
+            int segment = Integer.parseInt(key.substring(separator + 1));
+            tokens.computeIfAbsent(processorName, __ -> new TreeMap<>()).put(segment, Long.parseLong(properties.getProperty(key)));
+        }
+    }
+
+    private static long globalIndexOf(TrackingToken token) {
+        if (token == null) {
+            return NO_TOKEN;
+        } else if (token instanceof GlobalSequenceTrackingToken) {
+            return ((GlobalSequenceTrackingToken) token).getGlobalIndex();
+        }
+        throw new IllegalArgumentException("Unsupported tracking token: " + token.getClass().getName());
+    }
+
+    private static TrackingToken tokenOf(long globalIndex) {
+        return globalIndex == NO_TOKEN ? null : new GlobalSequenceTrackingToken(globalIndex);
+    }
+}
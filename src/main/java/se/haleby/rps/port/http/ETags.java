@@ -0,0 +1,56 @@
+package se.haleby.rps.port.http;
+
+import java.util.zip.CRC32;
+
+/**
+ * Entity tags of responses, and matching them against the {@code If-None-Match} header of conditional requests.
+ */
+class ETags {
+    static final String ETAG_HEADER = "ETag";
+    static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private ETags() {
+    }
+
+    /**
+     * A game info changes only when its version does, so the version identifies its representation without having to
+     * look at the representation itself.
+     */
+    static String ofVersion(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return The version of a game info identified by an entity tag created by {@link #ofVersion(long)}, weak or not
+     */
+    static long versionOf(String etag) {
+        String tag = etag.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Not an entity tag of a game: " + etag);
+        }
+        return Long.parseLong(tag.substring(1, tag.length() - 1));
+    }
+
+    static String ofContent(byte[] content) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        return "\"" + Long.toHexString(crc32.getValue()) + "\"";
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,61 +1,244 @@
 package se.haleby.rps.port.http;
 
+import io.javalin.Context;
+import io.javalin.Handler;
 import io.javalin.Javalin;
+import io.javalin.json.JavalinJson;
 import io.javalin.staticfiles.Location;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import se.haleby.rps.application.GameApplicationService;
 import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.cluster.ClusterCommands;
+import se.haleby.rps.infrastructure.metrics.LatencyHistogram;
+import se.haleby.rps.infrastructure.metrics.Metrics;
 import se.haleby.rps.projection.gameinfo.GameInfo;
 import se.haleby.rps.projection.gameinfo.GameInfoProjection;
-import se.haleby.rps.projection.gameinfo.GameInfoProjection.Predicates;
 import se.haleby.rps.projection.gameinfo.GameInfoState;
+import se.haleby.rps.projection.gameinfo.GameKey;
+import se.haleby.rps.projection.gameinfo.GamePage;
+import se.haleby.rps.projection.playerstats.PlayerStats;
+import se.haleby.rps.projection.playerstats.PlayerStatsProjection;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
 import static se.haleby.rps.projection.gameinfo.GameInfoProjection.Predicates.all;
 
 public class GameApi {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MOVE_BATCH_QUEUE_SIZE = 4 * MAX_BATCH_SIZE;
+    private static final int JSON_CACHE_SIZE = 100_000;
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final int DEFAULT_LEADERBOARD_SIZE = 10;
+    private static final int MAX_LEADERBOARD_SIZE = 100;
+    private static final int MIN_REQUEST_THREADS = 8;
+    private static final int REQUEST_THREAD_IDLE_TIMEOUT_MILLIS = 60_000;
+    // Long polls are kept below the 30 second default timeout of asynchronous servlet requests
+    private static final long DEFAULT_LONG_POLL_TIMEOUT_MILLIS = 20_000;
+    private static final long MAX_LONG_POLL_TIMEOUT_MILLIS = 25_000;
 
     private final int port;
     private final Javalin app;
+    private final GameUpdatesSocket gameUpdatesSocket;
+    private final Metrics metrics;
+    private final GameJsonCache gameJsonCache = new GameJsonCache(JSON_CACHE_SIZE);
+    // Moves of batches are made on threads of their own rather than on the common fork-join pool, which completes the
+    // futures that the responses of other requests wait for and mustn't be blocked by commands handled on it
+    private final ThreadPoolExecutor moveBatchExecutor = moveBatchExecutor();
 
-    public GameApi(int port, Location directoriesLoadLocation, List<String> staticDirectories, GameApplicationService gameApplicationService, GameInfoProjection gameInfoProjection) {
+    public GameApi(int port, int maxRequestThreads, Location directoriesLoadLocation, List<String> staticDirectories, long updateIntervalMillis, Duration projectionTimeout, GameApplicationService gameApplicationService, GameInfoProjection gameInfoProjection, PlayerStatsProjection playerStatsProjection, Metrics metrics) {
         this.port = port;
-        app = configureJavalin(directoriesLoadLocation, staticDirectories);
+        this.metrics = metrics;
+        app = configureJavalin(maxRequestThreads, directoriesLoadLocation, staticDirectories);
+        gameUpdatesSocket = new GameUpdatesSocket(updateIntervalMillis);
+        gameInfoProjection.addChangeListener(gameUpdatesSocket);
+        gameUpdatesSocket.register(app, "/api/updates");
 
         // API
-        app.put("/api/games/:gameId", ctx -> {
+        app.put("/api/games/:gameId", timed("PUT", "/api/games/:gameId", ctx -> {
             String gameId = requireNonNull(ctx.pathParam("gameId"));
             String player = requireNonNull(ctx.header("player"));
             String move = ctx.formParam("move");
 
-            CompletableFuture<?> result = move == null ? gameApplicationService.startGame(gameId, player) : gameApplicationService.makeMove(gameId, player, Move.valueOf(move.toUpperCase()));
-            ctx.json(result.thenApply(__ -> findGame(gameId, gameInfoProjection)));
-        });
+            CompletableFuture<Long> version = move == null ? gameApplicationService.startGame(gameId, player) : gameApplicationService.makeMove(gameId, player, Move.valueOf(move.toUpperCase()));
+            // Respond once the projection has caught up with the command, without holding on to the request thread while waiting
+            ctx.contentType(JSON_CONTENT_TYPE).result(version
+                    .thenCompose(v -> gameInfoProjection.awaitVersion(gameId, v, projectionTimeout))
+                    .thenApply(gameInfo -> {
+                        ctx.header(ETags.ETAG_HEADER, ETags.ofVersion(gameInfo.version()));
+                        return new ByteArrayInputStream(gameJsonCache.json(gameInfo));
+                    }));
+        }));
 
-        app.get("/api/games", ctx -> {
-            Predicate<GameInfo> predicate = ctx.queryParams("state").stream()
+        app.get("/api/games", timed("GET", "/api/games", ctx -> {
+            Set<GameInfoState> states = ctx.queryParams("state").stream()
                     .map(stateString -> GameInfoState.valueOf(stateString.trim().toUpperCase()))
-                    .map(Predicates::hasState)
-                    .reduce(Predicate::or)
-                    .orElse(all());
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(GameInfoState.class)));
 
-            List<GameDTO> games = gameInfoProjection.find(predicate).stream().map(GAME_INFO_TO_DTO).collect(Collectors.toList());
-            ctx.json(games);
-        });
+            String limit = ctx.queryParam("limit");
+            String cursor = ctx.queryParam("cursor");
+            if (limit == null && cursor == null && acceptsNdJson(ctx)) {
+                // Stream all games without collecting them, e.g. for exports, which is why there's no ETag
+                ctx.contentType(GameNdJsonWriter.CONTENT_TYPE);
+                GameNdJsonWriter.write(gameInfoProjection.streamByState(states.isEmpty() ? EnumSet.allOf(GameInfoState.class) : states), ctx.res.getOutputStream());
+                return;
+            }
 
-        app.get("/api/games/:gameId", ctx -> {
+            final List<GameInfo> gameInfos;
+            if (limit == null && cursor == null) {
+                gameInfos = states.isEmpty() ? gameInfoProjection.find(all()) : gameInfoProjection.findByState(states);
+            } else {
+                int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Integer.parseInt(limit), MAX_PAGE_SIZE);
+                GameKey after = cursor == null ? null : GameKey.decode(cursor);
+                GamePage page = gameInfoProjection.findPage(states.isEmpty() ? EnumSet.allOf(GameInfoState.class) : states, after, pageSize);
+                page.next().ifPresent(next -> ctx.header(NEXT_CURSOR_HEADER, next.encode()));
+                gameInfos = page.games();
+            }
+            List<GameDTO> games = gameInfos.stream().map(GAME_INFO_TO_DTO).collect(Collectors.toList());
+            byte[] json = JavalinJson.toJson(games).getBytes(StandardCharsets.UTF_8);
+            respond(ctx, ETags.ofContent(json), () -> json);
+        }));
+
+        app.get("/api/games/:gameId", timed("GET", "/api/games/:gameId", ctx -> {
             String gameId = requireNonNull(ctx.pathParam("gameId"));
-            ctx.json(findGame(gameId, gameInfoProjection));
-        });
+            GameInfo gameInfo = findGame(gameId, gameInfoProjection);
+            // Answer conditional requests from the version alone, without serializing the game
+            respond(ctx, ETags.ofVersion(gameInfo.version()), () -> gameJsonCache.json(gameInfo));
+        }));
+
+        app.get("/api/games/:gameId/poll", timed("GET", "/api/games/:gameId/poll", ctx -> {
+            String gameId = requireNonNull(ctx.pathParam("gameId"));
+            String ifNoneMatch = ctx.header(ETags.IF_NONE_MATCH_HEADER);
+            String afterVersion = ctx.queryParam("afterVersion");
+            if (afterVersion == null && ifNoneMatch == null) {
+                throw new IllegalArgumentException("The afterVersion query parameter or an If-None-Match header is required");
+            }
+            if (!gameInfoProjection.findById(gameId).isPresent()) {
+                ctx.status(404).result("Game " + gameId + " doesn't exist");
+                return;
+            }
+            long version = afterVersion == null ? ETags.versionOf(ifNoneMatch) : Long.parseLong(afterVersion);
+            String timeout = ctx.queryParam("timeout");
+            long timeoutMillis = timeout == null ? DEFAULT_LONG_POLL_TIMEOUT_MILLIS : Math.min(Long.parseLong(timeout), MAX_LONG_POLL_TIMEOUT_MILLIS);
+            // Park the request, without holding on to its thread, until the projection has applied a newer event of the game
+            ctx.contentType(JSON_CONTENT_TYPE).result(gameInfoProjection.awaitVersion(gameId, version + 1, Duration.ofMillis(timeoutMillis))
+                    .<InputStream>handle((gameInfo, failure) -> {
+                        if (failure == null) {
+                            ctx.header(ETags.ETAG_HEADER, ETags.ofVersion(gameInfo.version()));
+                            return new ByteArrayInputStream(gameJsonCache.json(gameInfo));
+                        }
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                        if (!(cause instanceof TimeoutException)) {
+                            throw new CompletionException(cause);
+                        }
+                        // Nothing happened within the timeout, so the client polls again with the same version. Only a
+                        // conditional request can be answered with Not Modified.
+                        ctx.status(ifNoneMatch == null ? 204 : 304);
+                        gameInfoProjection.findById(gameId).ifPresent(current -> ctx.header(ETags.ETAG_HEADER, ETags.ofVersion(current.version())));
+                        return new ByteArrayInputStream(new byte[0]);
+                    }));
+        }));
+
+        app.post("/api/moves", timed("POST", "/api/moves", ctx -> {
+            List<MoveDTO> moves = Arrays.asList(ctx.bodyAsClass(MoveDTO[].class));
+            if (moves.size() > MAX_BATCH_SIZE) {
+                throw new IllegalArgumentException("A batch can contain at most " + MAX_BATCH_SIZE + " moves but contained " + moves.size());
+            }
+            ctx.json(MoveBatch.dispatch(moves, gameApplicationService, moveBatchExecutor));
+        }));
+
+        app.get("/api/players/:playerId", timed("GET", "/api/players/:playerId", ctx -> {
+            String playerId = requireNonNull(ctx.pathParam("playerId"));
+            Optional<PlayerStats> stats = playerStatsProjection.findByPlayerId(playerId);
+            if (stats.isPresent()) {
+                ctx.json(PlayerStatsDTO.from(stats.get()));
+            } else {
+                ctx.status(404).result("Player " + playerId + " hasn't made any move");
+            }
+        }));
+
+        app.get("/api/leaderboard", timed("GET", "/api/leaderboard", ctx -> {
+            String limit = ctx.queryParam("limit");
+            int size = limit == null ? DEFAULT_LEADERBOARD_SIZE : Math.min(Integer.parseInt(limit), MAX_LEADERBOARD_SIZE);
+            ctx.json(playerStatsProjection.leaderboard(size).stream().map(PlayerStatsDTO::from).collect(Collectors.toList()));
+        }));
+
+        // Metrics
+        app.get("/metrics", ctx -> ctx.json(metrics.snapshot()));
     }
 
-    private Javalin configureJavalin(Location directoriesLoadLocation, List<String> staticDirectories) {
-        Javalin javalin = Javalin.create();
+    /**
+     * Lets the other nodes of a cluster send commands of games owned by this node, which are handled by the local
+     * command bus rather than being routed again.
+     */
+    public void acceptClusterCommands(CommandGateway localCommandGateway) {
+        String route = ClusterCommands.PATH + "/:command";
+        app.post(route, timed("POST", route, ctx -> {
+            Object command = ClusterCommands.deserializeCommand(ctx.pathParam("command"), ctx.bodyAsBytes());
+            ctx.contentType(JSON_CONTENT_TYPE).result(localCommandGateway.send(command)
+                    .thenApply(result -> new ByteArrayInputStream(ClusterCommands.serialize(result))));
+        }));
+    }
+
+    /**
+     * Times a route as {@code http.server.requests{method=..,route=..}}, until the response is available when the route
+     * responds asynchronously.
+     */
+    private Handler timed(String method, String route, Handler handler) {
+        LatencyHistogram timer = metrics.timer("http.server.requests", "method", method, "route", route);
+        return ctx -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(ctx);
+            } finally {
+                CompletableFuture<?> result = ctx.resultFuture();
+                if (result == null) {
+                    timer.recordSince(start);
+                } else {
+                    result.whenComplete((__, ___) -> timer.recordSince(start));
+                }
+            }
+        };
+    }
+
+    private Javalin configureJavalin(int maxRequestThreads, Location directoriesLoadLocation, List<String> staticDirectories) {
+        Javalin javalin = Javalin.create()
+                .server(() -> new Server(new QueuedThreadPool(maxRequestThreads, Math.min(MIN_REQUEST_THREADS, maxRequestThreads), REQUEST_THREAD_IDLE_TIMEOUT_MILLIS)));
+        javalin.exception(IllegalArgumentException.class, (e, ctx) -> ctx.status(400).result(e.getMessage()));
+        javalin.exception(TimeoutException.class, (e, ctx) -> ctx.status(503).result(e.getMessage()));
+        // Failures of asynchronous results are wrapped
+        javalin.exception(CompletionException.class, (e, ctx) -> {
+            if (e.getCause() instanceof TimeoutException || e.getCause() instanceof RejectedExecutionException) {
+                ctx.status(503).result(e.getCause().getMessage());
+            } else {
+                ctx.status(500).result(String.valueOf(e.getCause()));
+            }
+        });
+        // Responses that set an ETag of their own, like the games tagged by version, keep it instead of a checksum
         javalin.defaultContentType("text/plain")
                 .enableAutogeneratedEtags()
                 .disableStartupBanner()
@@ -69,15 +252,49 @@ public class GameApi {
 
     public void start() {
         app.start(port);
+        gameUpdatesSocket.start();
     }
 
     public void stop() {
+        gameUpdatesSocket.stop();
         app.stop();
+        moveBatchExecutor.shutdown();
+    }
+
+    /**
+     * @return The port the server listens on, which is picked by the server once started if it was configured as 0
+     */
+    public int port() {
+        return app.port();
+    }
+
+    private static final Function<GameInfo, GameDTO> GAME_INFO_TO_DTO = GameDTO::from;
+
+    private static void respond(Context ctx, String etag, Supplier<byte[]> json) {
+        ctx.header(ETags.ETAG_HEADER, etag);
+        if (ETags.matches(ctx.header(ETags.IF_NONE_MATCH_HEADER), etag)) {
+            ctx.status(304);
+        } else {
+            ctx.contentType(JSON_CONTENT_TYPE).result(new ByteArrayInputStream(json.get()));
+        }
+    }
+
+    private static boolean acceptsNdJson(Context ctx) {
+        String accept = ctx.header("Accept");
+        return accept != null && accept.contains(GameNdJsonWriter.CONTENT_TYPE);
     }
 
-    private static final Function<GameInfo, GameDTO> GAME_INFO_TO_DTO = gameInfo -> new GameDTO(gameInfo.createdAt(), gameInfo.gameId(), gameInfo.player1(), gameInfo.player2(), gameInfo.winner(), gameInfo.state().name().toLowerCase());
+    private static ThreadPoolExecutor moveBatchExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MOVE_BATCH_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "move-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-    private static GameDTO findGame(String gameId, GameInfoProjection projection) {
-        return projection.findById(gameId).map(GAME_INFO_TO_DTO).orElseThrow(() -> new IllegalStateException("Internal error: Couldn't find game in started games or ended games"));
+    private static GameInfo findGame(String gameId, GameInfoProjection projection) {
+        return projection.findById(gameId).orElseThrow(() -> new IllegalStateException("Internal error: Couldn't find game in started games or ended games"));
     }
 }
@@ -2,6 +2,7 @@ package se.haleby.rps.port.http;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import se.haleby.rps.projection.gameinfo.GameInfo;
 
 import java.util.Date;
 
@@ -16,4 +17,8 @@ class GameDTO {
     private final String player2;
     private final String winner;
     private final String state;
+
+    static GameDTO from(GameInfo gameInfo) {
+        return new GameDTO(gameInfo.createdAt(), gameInfo.gameId(), gameInfo.player1(), gameInfo.player2(), gameInfo.winner(), gameInfo.state().name().toLowerCase());
+    }
 }
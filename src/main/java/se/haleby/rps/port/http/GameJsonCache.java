@@ -0,0 +1,56 @@
+package se.haleby.rps.port.http;
+
+import io.javalin.json.JavalinJson;
+import se.haleby.rps.projection.gameinfo.GameInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the JSON representation of the latest version of each game that has been requested, so that a game is only
+ * converted and serialized once per version no matter how many times it's read.
+ * <p>
+ * The cache holds roughly at most a given number of games. When it's full an arbitrary game is evicted, which keeps the
+ * cache lock-free and is good enough since an evicted game is simply serialized again.
+ */
+class GameJsonCache {
+    private final int maxSize;
+    private final Map<String, Json> jsonByGameId = new ConcurrentHashMap<>();
+
+    GameJsonCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    byte[] json(GameInfo gameInfo) {
+        Json cached = jsonByGameId.get(gameInfo.gameId());
+        if (cached != null && cached.version == gameInfo.version()) {
+            return cached.bytes;
+        }
+        byte[] bytes = JavalinJson.toJson(GameDTO.from(gameInfo)).getBytes(StandardCharsets.UTF_8);
+        if (cached == null && jsonByGameId.size() >= maxSize) {
+            evictAny();
+        }
+        jsonByGameId.put(gameInfo.gameId(), new Json(gameInfo.version(), bytes));
+        return bytes;
+    }
+
+    private void evictAny() {
+        Iterator<String> gameIds = jsonByGameId.keySet().iterator();
+        if (gameIds.hasNext()) {
+            gameIds.next();
+            gameIds.remove();
+        }
+    }
+
+    private static class Json {
+        private final long version;
+        private final byte[] bytes;
+
+        private Json(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+}
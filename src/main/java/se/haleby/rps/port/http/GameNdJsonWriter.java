@@ -0,0 +1,42 @@
+package se.haleby.rps.port.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import se.haleby.rps.projection.gameinfo.GameInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes games as newline delimited JSON (NDJSON), one game per line, straight to an output stream while the games are
+ * iterated. Neither the games nor their JSON are collected first, so memory use doesn't depend on the number of games
+ * and the first games reach the client before the rest have been serialized.
+ */
+class GameNdJsonWriter {
+    static final String CONTENT_TYPE = "application/x-ndjson";
+
+    // Games are separated by the new lines written below, and the output stream is flushed when its buffer is full
+    // rather than after each game
+    private static final ObjectWriter GAME_WRITER = new ObjectMapper().writerFor(GameDTO.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .withRootValueSeparator((String) null);
+
+    private GameNdJsonWriter() {
+    }
+
+    static void write(Stream<GameInfo> games, OutputStream out) throws IOException {
+        try (JsonGenerator generator = GAME_WRITER.getFactory().createGenerator(out)) {
+            // Leave it to the caller to close the output stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (Iterator<GameInfo> iterator = games.iterator(); iterator.hasNext(); ) {
+                GAME_WRITER.writeValue(generator, GameDTO.from(iterator.next()));
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
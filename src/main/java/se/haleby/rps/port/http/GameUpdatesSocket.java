@@ -0,0 +1,182 @@
+package se.haleby.rps.port.http;
+
+import io.javalin.Javalin;
+import io.javalin.json.JavalinJson;
+import io.javalin.websocket.WsSession;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.haleby.rps.projection.gameinfo.GameInfo;
+import se.haleby.rps.projection.gameinfo.GameInfoChangeListener;
+import se.haleby.rps.projection.gameinfo.GameInfoState;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes changed games to web socket clients. Clients may narrow what they receive by supplying one or more
+ * {@code gameId} and/or {@code state} query parameters when connecting, otherwise they receive all changes. A client
+ * subscribed to a state is also told when a game leaves that state.
+ * <p>
+ * Changes are coalesced per game and sent at a fixed interval as a JSON array of games, so a burst of events for a
+ * game results in a single update containing its latest state. A client that falls behind, i.e. that has too many
+ * updates that haven't been sent yet, is disconnected rather than having its updates queued without bounds.
+ */
+class GameUpdatesSocket implements GameInfoChangeListener {
+    private static final Logger log = LoggerFactory.getLogger(GameUpdatesSocket.class);
+    private static final int POLICY_VIOLATION = 1008;
+    private static final int TRY_AGAIN_LATER = 1013;
+    private static final int MAX_PENDING_MESSAGES = 16;
+
+    private final long flushIntervalMillis;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Change> pendingChanges = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    GameUpdatesSocket(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    void register(Javalin app, String path) {
+        app.ws(path, ws -> {
+            ws.onConnect(this::subscribe);
+            ws.onClose((session, statusCode, reason) -> subscriptions.remove(session.getId()));
+            ws.onError((session, throwable) -> subscriptions.remove(session.getId()));
+        });
+    }
+
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        subscriptions.clear();
+    }
+
+    @Override
+    public void gameInfoChanged(GameInfo previous, GameInfo current) {
+        if (previous != null && GameDTO.from(previous).equals(GameDTO.from(current))) {
+            // Events such as RoundStarted only change the version, which clients don't see
+            return;
+        }
+        GameInfoState previousState = previous == null ? null : previous.state();
+        pendingChanges.merge(current.gameId(), new Change(previousState, current), Change::followedBy);
+    }
+
+    private void subscribe(WsSession session) {
+        final Set<GameInfoState> states;
+        try {
+            states = session.queryParams("state").stream()
+                    .map(stateString -> GameInfoState.valueOf(stateString.trim().toUpperCase()))
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(GameInfoState.class)));
+        } catch (IllegalArgumentException e) {
+            session.close(POLICY_VIOLATION, e.getMessage());
+            return;
+        }
+        Set<String> gameIds = new HashSet<>(session.queryParams("gameId"));
+        subscriptions.put(session.getId(), new Subscription(session, gameIds, states));
+    }
+
+    private void flush() {
+        try {
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            List<Change> changes = new ArrayList<>(pendingChanges.size());
+            for (String gameId : pendingChanges.keySet()) {
+                Change change = pendingChanges.remove(gameId);
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+            // Serialize each game once and compose the per-subscription arrays from the serialized games
+            Map<String, String> json = changes.stream().collect(Collectors.toMap(change -> change.current().gameId(), change -> JavalinJson.toJson(GameDTO.from(change.current()))));
+            for (Subscription subscription : subscriptions.values()) {
+                String message = changes.stream()
+                        .filter(subscription::matches)
+                        .map(change -> json.get(change.current().gameId()))
+                        .collect(Collectors.joining(",", "[", "]"));
+                if (message.length() > 2 && subscription.session().isOpen()) {
+                    send(subscription, message);
+                }
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled flush
+            log.error("Failed to push game updates", e);
+        }
+    }
+
+    private void send(Subscription subscription, String message) {
+        WsSession session = subscription.session();
+        if (subscription.pendingMessages().incrementAndGet() > MAX_PENDING_MESSAGES) {
+            log.info("Disconnecting web socket client {} that has {} updates that haven't been sent", session.getId(), MAX_PENDING_MESSAGES);
+            subscriptions.remove(session.getId());
+            session.close(TRY_AGAIN_LATER, "Too many pending updates");
+            return;
+        }
+        session.getRemote().sendString(message, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable x) {
+                subscription.pendingMessages().decrementAndGet();
+            }
+
+            @Override
+            public void writeSuccess() {
+                subscription.pendingMessages().decrementAndGet();
+            }
+        });
+    }
+
+    @Data
+    @Accessors(fluent = true)
+    private static class Change {
+        private final GameInfoState previousState;
+        private final GameInfo current;
+
+        Change followedBy(Change next) {
+            return new Change(previousState, next.current);
+        }
+    }
+
+    @Data
+    @Accessors(fluent = true)
+    private static class Subscription {
+        private final WsSession session;
+        private final Set<String> gameIds;
+        private final Set<GameInfoState> states;
+        // Messages passed to the session that haven't been written yet
+        private final AtomicInteger pendingMessages = new AtomicInteger();
+
+        boolean matches(Change change) {
+            if (gameIds.isEmpty() && states.isEmpty()) {
+                return true;
+            }
+            return gameIds.contains(change.current().gameId())
+                    || states.contains(change.current().state())
+                    || (change.previousState() != null && states.contains(change.previousState()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package se.haleby.rps.port.http;
+
+import se.haleby.rps.application.GameApplicationService;
+import se.haleby.rps.domain.model.Move;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Dispatches a batch of moves. Moves of different games are dispatched concurrently, while each move of a game is
+ * dispatched only once the previous move of the same game in the batch has completed, so they're made in order.
+ * A failed move doesn't stop the following moves.
+ */
+class MoveBatch {
+    private static final CompletableFuture<MoveResultDTO> NO_PREVIOUS_MOVE = CompletableFuture.completedFuture(null);
+
+    private MoveBatch() {
+    }
+
+    /**
+     * @param executor Executor the moves are dispatched on, a move that it rejects fails with a
+     *                 {@link RejectedExecutionException}
+     * @return A future completed with the result of each move, in the same order as the moves
+     */
+    static CompletableFuture<List<MoveResultDTO>> dispatch(List<MoveDTO> moves, GameApplicationService gameApplicationService, Executor executor) {
+        Map<String, CompletableFuture<MoveResultDTO>> lastMoveOfGame = new HashMap<>();
+        List<CompletableFuture<MoveResultDTO>> results = new ArrayList<>(moves.size());
+        for (MoveDTO move : moves) {
+            // Dispatch asynchronously, since a command may be handled on the dispatching thread, so that games don't wait for each other
+            CompletableFuture<MoveResultDTO> result = lastMoveOfGame.getOrDefault(move.getGameId(), NO_PREVIOUS_MOVE)
+                    .thenComposeAsync(__ -> makeMove(move, gameApplicationService), executor)
+                    .exceptionally(throwable -> MoveResultDTO.failed(move, messageOf(throwable)));
+            if (move.getGameId() != null) {
+                lastMoveOfGame.put(move.getGameId(), result);
+            }
+            results.add(result);
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                .thenApply(__ -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    // Never completes exceptionally, failures are turned into failed results
+    private static CompletableFuture<MoveResultDTO> makeMove(MoveDTO move, GameApplicationService gameApplicationService) {
+        if (move.getGameId() == null || move.getPlayer() == null || move.getMove() == null) {
+            return CompletableFuture.completedFuture(MoveResultDTO.failed(move, "gameId, player and move are required"));
+        }
+        try {
+            return gameApplicationService.makeMove(move.getGameId(), move.getPlayer(), Move.valueOf(move.getMove().toUpperCase()))
+                    .handle((version, throwable) -> throwable == null ? MoveResultDTO.succeeded(move, version) : MoveResultDTO.failed(move, messageOf(throwable)));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(MoveResultDTO.failed(move, messageOf(e)));
+        }
+    }
+
+    private static String messageOf(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+    }
+}
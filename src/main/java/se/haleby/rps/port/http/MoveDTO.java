@@ -0,0 +1,14 @@
+package se.haleby.rps.port.http;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class MoveDTO {
+    private String gameId;
+    private String player;
+    private String move;
+}
@@ -0,0 +1,27 @@
+package se.haleby.rps.port.http;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+/**
+ * The outcome of a move in a batch, either the version of the game after the move or the reason the move failed.
+ */
+@Data
+@JsonInclude(NON_NULL)
+class MoveResultDTO {
+    private final String gameId;
+    private final String player;
+    private final String move;
+    private final Long version;
+    private final String error;
+
+    static MoveResultDTO succeeded(MoveDTO move, long version) {
+        return new MoveResultDTO(move.getGameId(), move.getPlayer(), move.getMove(), version, null);
+    }
+
+    static MoveResultDTO failed(MoveDTO move, String error) {
+        return new MoveResultDTO(move.getGameId(), move.getPlayer(), move.getMove(), null, error);
+    }
+}
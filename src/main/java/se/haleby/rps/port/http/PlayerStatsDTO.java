@@ -0,0 +1,29 @@
+package se.haleby.rps.port.http;
+
+import lombok.Data;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.projection.playerstats.PlayerStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+class PlayerStatsDTO {
+    private final String playerId;
+    private final long gamesPlayed;
+    private final long gamesWon;
+    private final long gamesLost;
+    private final long gamesTied;
+    private final long roundsWon;
+    private final long roundsLost;
+    private final long roundsTied;
+    private final Map<String, Long> moves;
+
+    static PlayerStatsDTO from(PlayerStats stats) {
+        Map<String, Long> moves = new LinkedHashMap<>();
+        for (Move move : Move.values()) {
+            moves.put(move.name().toLowerCase(), stats.moves(move));
+        }
+        return new PlayerStatsDTO(stats.playerId(), stats.gamesPlayed(), stats.gamesWon(), stats.gamesLost(), stats.gamesTied(), stats.roundsWon(), stats.roundsLost(), stats.roundsTied(), moves);
+    }
+}
@@ -0,0 +1,154 @@
+package se.haleby.rps.projection.gameinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An append-only file of ended games. Only the position of each game in the file is kept in memory, and a game is read
+ * back from the file when it's looked up.
+ * <p>
+ * Record layout: {@code [int length][body]} where the body is the fields of the game info written with a
+ * {@link DataOutputStream}.
+ */
+class GameArchive implements AutoCloseable {
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final GameInfoState[] STATES = GameInfoState.values();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, Long> positions = new ConcurrentHashMap<>();
+    private long size;
+
+    GameArchive(Path file) {
+        this.file = file;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            // The projection, and hence the archive, is rebuilt on start from the events or from a checkpoint
+            channel = FileChannel.open(file, CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open game archive " + file, e);
+        }
+    }
+
+    void add(GameInfo gameInfo) {
+        byte[] body = encode(gameInfo);
+        ByteBuffer record = ByteBuffer.allocate(LENGTH_SIZE + body.length);
+        record.putInt(body.length).put(body).flip();
+        long position;
+        synchronized (this) {
+            position = size;
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record, position + record.position());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to archive game " + gameInfo.gameId(), e);
+            }
+            size += record.limit();
+        }
+        positions.put(gameInfo.gameId(), position);
+    }
+
+    Optional<GameInfo> find(String gameId) {
+        Long position = positions.get(gameId);
+        if (position == null) {
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer length = read(position, LENGTH_SIZE);
+            return Optional.of(decode(read(position + LENGTH_SIZE, length.getInt()).array()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived game " + gameId, e);
+        }
+    }
+
+    boolean contains(String gameId) {
+        return positions.containsKey(gameId);
+    }
+
+    /**
+     * @return The ids of the archived games, a weakly consistent view that includes games archived while it's iterated
+     */
+    Collection<String> gameIds() {
+        return Collections.unmodifiableSet(positions.keySet());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of game archive " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static byte[] encode(GameInfo gameInfo) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(gameInfo.createdAt().getTime());
+            out.writeUTF(gameInfo.gameId());
+            writeNullable(out, gameInfo.winner());
+            writeNullable(out, gameInfo.player1());
+            writeNullable(out, gameInfo.player2());
+            out.writeByte(gameInfo.state().ordinal());
+            out.writeBoolean(gameInfo.joinable());
+            out.writeLong(gameInfo.version());
+        } catch (IOException e) {
+            // Never thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static GameInfo decode(byte[] body) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            return GameInfo.builder()
+                    .createdAt(new Date(in.readLong()))
+                    .gameId(in.readUTF())
+                    .winner(readNullable(in))
+                    .player1(readNullable(in))
+                    .player2(readNullable(in))
+                    .state(STATES[in.readByte()])
+                    .joinable(in.readBoolean())
+                    .version(in.readLong())
+                    .build();
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
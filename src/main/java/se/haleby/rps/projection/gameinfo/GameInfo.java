@@ -21,8 +21,14 @@ public class GameInfo {
     private final String player2;
     private final GameInfoState state;
     private final boolean joinable;
+    // The sequence number of the last event of the game applied to this game info
+    private final long version;
 
     public boolean hasState(GameInfoState state) {
         return this.state == state;
     }
+
+    public boolean hasReachedVersion(long version) {
+        return this.version >= version;
+    }
 }
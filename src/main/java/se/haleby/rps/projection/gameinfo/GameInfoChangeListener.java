@@ -0,0 +1,11 @@
+package se.haleby.rps.projection.gameinfo;
+
+@FunctionalInterface
+public interface GameInfoChangeListener {
+
+    /**
+     * @param previous The game before the change, or {@code null} if the game was created
+     * @param current  The game after the change
+     */
+    void gameInfoChanged(GameInfo previous, GameInfo current);
+}
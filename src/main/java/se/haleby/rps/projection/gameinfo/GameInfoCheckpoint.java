@@ -0,0 +1,126 @@
+package se.haleby.rps.projection.gameinfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+/**
+ * A file with the state of a {@link GameInfoProjection} together with the position in the event stream up to which all
+ * events are reflected by it. The file is written to a temporary file that is then moved in place, so a checkpoint is
+ * either written completely or not at all.
+ * <p>
+ * Layout: {@code [int magic][byte format][long position]} followed by records, each starting with a kind byte, and an
+ * end marker. Games are written as {@code [int length][body]} with the same body as in the {@link GameArchive}.
+ */
+class GameInfoCheckpoint {
+    private static final int MAGIC = 0x47494350;
+    private static final byte FORMAT = 1;
+    private static final byte END = 0;
+    private static final byte GAME = 1;
+    private static final byte ARCHIVED_GAME = 2;
+    private static final byte ENDED_GAME = 3;
+
+    interface Contents {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    interface Visitor {
+        void game(GameInfo gameInfo);
+
+        void archivedGame(GameInfo gameInfo);
+
+        void endedGame(String gameId, Instant endedAt);
+    }
+
+    static void write(Path file, long position, Contents contents) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT);
+                out.writeLong(position);
+                contents.writeTo(new Writer(out));
+                out.writeByte(END);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * @return The position of the checkpoint, after all its records have been passed to the visitor
+     */
+    static long read(Path file, Visitor visitor) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT) {
+                throw new IOException("Not a game info checkpoint of a supported format");
+            }
+            long position = in.readLong();
+            byte kind;
+            while ((kind = in.readByte()) != END) {
+                switch (kind) {
+                    case GAME:
+                        visitor.game(readGame(in));
+                        break;
+                    case ARCHIVED_GAME:
+                        visitor.archivedGame(readGame(in));
+                        break;
+                    case ENDED_GAME:
+                        visitor.endedGame(in.readUTF(), Instant.ofEpochMilli(in.readLong()));
+                        break;
+                    default:
+                        throw new IOException("Unknown record kind " + kind);
+                }
+            }
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read checkpoint " + file, e);
+        }
+    }
+
+    private static GameInfo readGame(DataInputStream in) throws IOException {
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return GameArchive.decode(body);
+    }
+
+    static class Writer {
+        private final DataOutputStream out;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void game(GameInfo gameInfo) throws IOException {
+            writeGame(GAME, gameInfo);
+        }
+
+        void archivedGame(GameInfo gameInfo) throws IOException {
+            writeGame(ARCHIVED_GAME, gameInfo);
+        }
+
+        void endedGame(String gameId, Instant endedAt) throws IOException {
+            out.writeByte(ENDED_GAME);
+            out.writeUTF(gameId);
+            out.writeLong(endedAt.toEpochMilli());
+        }
+
+        private void writeGame(byte kind, GameInfo gameInfo) throws IOException {
+            byte[] body = GameArchive.encode(gameInfo);
+            out.writeByte(kind);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+    }
+}
@@ -1,55 +1,451 @@
 package se.haleby.rps.projection.gameinfo;
 
+import org.axonframework.config.ProcessingGroup;
 import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventhandling.Timestamp;
+import org.axonframework.eventsourcing.SequenceNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import se.haleby.rps.domain.event.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static java.util.function.UnaryOperator.identity;
 import static se.haleby.rps.projection.gameinfo.GameInfoState.*;
 
 
-public class GameInfoProjection {
+@ProcessingGroup(GameInfoProjection.PROCESSING_GROUP)
+public class GameInfoProjection implements AutoCloseable {
+    public static final String PROCESSING_GROUP = "game-info";
+    private static final Logger log = LoggerFactory.getLogger(GameInfoProjection.class);
+    private static final long ARCHIVE_SWEEP_INTERVAL_MILLIS = 1000;
 
     private static final Predicate<GameInfo> ALL_PREDICATE = __ -> true;
     private final Map<String, GameInfo> games = new ConcurrentHashMap<>();
+    // Secondary index of the games in each state in listing order, maintained together with the games map
+    private final Map<GameInfoState, NavigableSet<GameKey>> gamesByState = new EnumMap<>(GameInfoState.class);
+    // The size of a skip list set is computed by traversing it, so the number of games in each state is kept separately
+    private final Map<GameInfoState, LongAdder> countByState = new EnumMap<>(GameInfoState.class);
+    private final List<GameInfoChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final VersionWaiters versionWaiters = new VersionWaiters();
+    private final RetentionPolicy retentionPolicy;
+    // Ended games in the order they ended and the archive they're moved to, both null when ended games are kept forever
+    private final Queue<EndedGame> endedGames;
+    private final AtomicInteger endedGameCount = new AtomicInteger();
+    private final GameArchive archive;
+    // Archives games that exceed the max age when no games end, null when there's no max age
+    private final ScheduledExecutorService archiveSweeper;
+
+    public GameInfoProjection() {
+        this(RetentionPolicy.unlimited());
+    }
+
+    public GameInfoProjection(RetentionPolicy retentionPolicy) {
+        for (GameInfoState state : GameInfoState.values()) {
+            gamesByState.put(state, new ConcurrentSkipListSet<>());
+            countByState.put(state, new LongAdder());
+        }
+        this.retentionPolicy = retentionPolicy;
+        if (retentionPolicy.isUnlimited()) {
+            endedGames = null;
+            archive = null;
+        } else {
+            endedGames = new ConcurrentLinkedQueue<>();
+            archive = new GameArchive(retentionPolicy.archiveFile() == null ? temporaryArchiveFile() : retentionPolicy.archiveFile());
+        }
+        archiveSweeper = retentionPolicy.hasMaxAge() ? startArchiveSweeper() : null;
+    }
+
+    @EventHandler
+    public void when(GameCreated evt, @SequenceNumber long sequenceNumber) {
+        if (archive != null && archive.contains(evt.getGameId())) {
+            // Replayed after restoring a checkpoint, see update
+            return;
+        }
+        GameInfo created = games.compute(evt.getGameId(), tracked((__, existing) -> existing != null ? existing :
+                GameInfo.builder().createdAt(evt.getCreatedAt()).gameId(evt.getGameId()).state(JOINABLE).joinable(true).version(sequenceNumber).build()));
+        versionWaiters.versionReached(created);
+    }
+
+    @EventHandler
+    public void when(FirstPlayerJoinedGame evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, startedGame -> startedGame.withPlayer1(evt.getPlayer()));
+    }
+
+    @EventHandler
+    public void when(SecondPlayerJoinedGame evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, gameInfo -> gameInfo.withPlayer2(evt.getPlayer()).withState(STARTED));
+    }
+
+    @EventHandler
+    public void when(GameWon evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, gameInfo -> gameInfo.withState(ENDED).withWinner(evt.getWinner()));
+    }
 
     @EventHandler
-    public void when(GameCreated evt) {
-        games.put(evt.getGameId(), GameInfo.builder().createdAt(evt.getCreatedAt()).gameId(evt.getGameId()).state(JOINABLE).joinable(true).build());
+    public void when(GameTied evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, gameInfo -> gameInfo.withState(ENDED));
+    }
+
+    // The remaining events of a game don't change the game info but are handled to keep track of its version
+
+    @EventHandler
+    public void when(RoundStarted evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, identity());
+    }
+
+    @EventHandler
+    public void when(MoveMade evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, identity());
     }
 
     @EventHandler
-    public void when(FirstPlayerJoinedGame evt) {
-        games.computeIfPresent(evt.getGameId(), (__, startedGame) -> startedGame.withPlayer1(evt.getPlayer()));
+    public void when(RoundWon evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, identity());
     }
 
     @EventHandler
-    public void when(SecondPlayerJoinedGame evt) {
-        games.computeIfPresent(evt.getGameId(), (__, gameInfo) -> gameInfo.withPlayer2(evt.getPlayer()).withState(STARTED));
+    public void when(RoundTied evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, identity());
     }
 
     @EventHandler
-    public void when(GameWon evt) {
-        games.computeIfPresent(evt.getGameId(), (__, gameInfo) -> gameInfo.withState(ENDED).withWinner(evt.getWinner()));
+    public void when(RoundEnded evt, @SequenceNumber long sequenceNumber) {
+        update(evt.getGameId(), sequenceNumber, identity());
     }
 
     @EventHandler
-    public void when(GameTied evt) {
-        games.computeIfPresent(evt.getGameId(), (__, gameInfo) -> gameInfo.withState(ENDED));
+    public void when(GameEnded evt, @SequenceNumber long sequenceNumber, @Timestamp Instant timestamp) {
+        GameInfo gameInfo = games.get(evt.getGameId());
+        if (gameInfo == null || gameInfo.hasReachedVersion(sequenceNumber)) {
+            // Already applied before a checkpoint was written, so the game has already been queued for archiving
+            return;
+        }
+        update(evt.getGameId(), sequenceNumber, identity());
+        // GameEnded is the last event of a game so it can be archived without missing any updates
+        if (endedGames != null) {
+            endedGames.add(new EndedGame(evt.getGameId(), timestamp));
+            endedGameCount.incrementAndGet();
+            archiveEndedGames();
+        }
     }
 
     public List<GameInfo> find(Predicate<GameInfo> predicate) {
         return games.values().stream().filter(predicate).collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
     }
 
+    /**
+     * Find the games in any of the supplied states using the state index, i.e. without visiting games in other states.
+     */
+    public List<GameInfo> findByState(Collection<GameInfoState> states) {
+        return streamByState(states).collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+    }
+
+    /**
+     * Lazily stream the games in any of the supplied states, state by state and each state ordered by creation date,
+     * without copying them first. The stream is weakly consistent: a game changing state while the stream is consumed
+     * may be included twice or not at all.
+     */
+    public Stream<GameInfo> streamByState(Collection<GameInfoState> states) {
+        return states.stream().distinct()
+                .flatMap(state -> gamesByState.get(state).stream().map(key -> findInState(key, state)).filter(Optional::isPresent).map(Optional::get));
+    }
+
+    /**
+     * Find a page of at most {@code limit} games in any of the supplied states, ordered by creation date and game id.
+     * The cost is proportional to the page size and the number of states, not to the total number of games.
+     *
+     * @param after The key of the last game of the previous page, or {@code null} to get the first page
+     */
+    public GamePage findPage(Collection<GameInfoState> states, GameKey after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than 0");
+        }
+        // Take one more than the limit from each state to know whether there's a next page after merging
+        List<GameInfo> candidates = new ArrayList<>();
+        states.stream().distinct().forEach(state -> {
+            NavigableSet<GameKey> keys = gamesByState.get(state);
+            int taken = 0;
+            for (GameKey key : after == null ? keys : keys.tailSet(after, false)) {
+                Optional<GameInfo> gameInfo = findInState(key, state);
+                if (gameInfo.isPresent()) {
+                    candidates.add(gameInfo.get());
+                    if (++taken > limit) {
+                        break;
+                    }
+                }
+            }
+        });
+        candidates.sort(Comparator.comparing(GameKey::of));
+        if (candidates.size() <= limit) {
+            return new GamePage(Collections.unmodifiableList(candidates), null);
+        }
+        List<GameInfo> page = candidates.subList(0, limit);
+        return new GamePage(Collections.unmodifiableList(new ArrayList<>(page)), GameKey.of(page.get(limit - 1)));
+    }
+
+    private Optional<GameInfo> findInState(GameKey key, GameInfoState state) {
+        // The index is updated right after the game, so a concurrent reader may briefly see a game under its previous state
+        return Optional.ofNullable(games.get(key.gameId())).filter(gameInfo -> gameInfo.hasState(state));
+    }
+
+    /**
+     * Find a game by id, including games that have been archived according to the retention policy.
+     */
     public Optional<GameInfo> findById(String gameId) {
-        return Optional.ofNullable(games.get(gameId));
+        Optional<GameInfo> gameInfo = Optional.ofNullable(games.get(gameId));
+        // Games are archived before they're removed from the games map, so a game missing from the map is in the archive
+        return gameInfo.isPresent() || archive == null ? gameInfo : archive.find(gameId);
+    }
+
+    /**
+     * @return The number of games in a state, including archived games
+     */
+    public long count(GameInfoState state) {
+        return countByState.get(state).sum();
+    }
+
+    /**
+     * Wait, without blocking, until the projection has applied the event with the given sequence number of a game. This
+     * makes it possible to read your own writes after a command regardless of how events are delivered to the projection.
+     *
+     * @return A future completed with the game once it has reached the version, or completed exceptionally with a
+     * {@link java.util.concurrent.TimeoutException} if that doesn't happen within the timeout
+     */
+    public CompletableFuture<GameInfo> awaitVersion(String gameId, long version, Duration timeout) {
+        return versionWaiters.await(gameId, version, timeout, () -> findById(gameId));
+    }
+
+    /**
+     * @return The number of futures returned by {@link #awaitVersion(String, long, Duration)} that are still waiting
+     */
+    public int versionWaiterCount() {
+        return versionWaiters.count();
+    }
+
+    /**
+     * Register a listener that is notified after each change of a game. Listeners are called on the event handling
+     * thread while the game is being updated, so they must be quick and must not block.
+     */
+    public void addChangeListener(GameInfoChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Apply an event to a game unless the game has already reached the version of the event. Events are only applied
+     * again when the events after the position of a checkpoint are replayed, since the checkpoint may have been written
+     * while some of them were being applied.
+     */
+    private void update(String gameId, long sequenceNumber, UnaryOperator<GameInfo> change) {
+        GameInfo updated = games.computeIfPresent(gameId, tracked((__, gameInfo) -> gameInfo.hasReachedVersion(sequenceNumber) ? gameInfo : change.apply(gameInfo).withVersion(sequenceNumber)));
+        // Waiters are notified after the update is visible to readers of the games map, see VersionWaiters
+        versionWaiters.versionReached(updated);
+    }
+
+    /**
+     * Wraps a remapping function so that the state index is updated whenever the state of the game changes and change
+     * listeners are notified. Since it's run inside the compute methods of the games map this happens atomically per game.
+     */
+    private BiFunction<String, GameInfo, GameInfo> tracked(BiFunction<String, GameInfo, GameInfo> remappingFunction) {
+        return (gameId, previous) -> {
+            GameInfo next = remappingFunction.apply(gameId, previous);
+            GameInfoState previousState = previous == null ? null : previous.state();
+            GameInfoState nextState = next == null ? null : next.state();
+            if (!Objects.equals(previousState, nextState)) {
+                if (nextState != null) {
+                    gamesByState.get(nextState).add(GameKey.of(next));
+                    countByState.get(nextState).increment();
+                }
+                if (previousState != null) {
+                    gamesByState.get(previousState).remove(GameKey.of(previous));
+                    countByState.get(previousState).decrement();
+                }
+            }
+            if (next != null && !next.equals(previous)) {
+                changeListeners.forEach(listener -> listener.gameInfoChanged(previous, next));
+            }
+            return next;
+        };
+    }
+
+    /**
+     * Write all games, including archived ones, to a checkpoint file from which the projection can be restored.
+     * Archiving waits while the checkpoint is written, so that every game is written exactly once.
+     *
+     * @param position The global index of an event such that the projection has applied all events up to and including
+     *                 it, {@code -1} if no event is known to have been applied. Later events may have been applied too.
+     */
+    public synchronized void writeCheckpoint(Path file, long position) {
+        GameInfoCheckpoint.write(file, position, writer -> {
+            for (GameInfo gameInfo : games.values()) {
+                writer.game(gameInfo);
+            }
+            if (archive != null) {
+                for (String gameId : archive.gameIds()) {
+                    Optional<GameInfo> archived = archive.find(gameId);
+                    if (archived.isPresent()) {
+                        writer.archivedGame(archived.get());
+                    }
+                }
+                for (EndedGame endedGame : endedGames) {
+                    writer.endedGame(endedGame.gameId, endedGame.endedAt);
+                }
+            }
+        });
+    }
+
+    /**
+     * Restore the games of a checkpoint file written by {@link #writeCheckpoint(Path, long)}, which must be done before
+     * any event is applied. Games are archived according to the retention policy of this projection, which may differ
+     * from the one in use when the checkpoint was written.
+     *
+     * @return The position of the checkpoint, after which events must be replayed to bring the projection up to date,
+     * or nothing if there's no checkpoint file
+     */
+    public synchronized OptionalLong restoreCheckpoint(Path file) {
+        if (!Files.exists(file)) {
+            return OptionalLong.empty();
+        }
+        if (!games.isEmpty()) {
+            throw new IllegalStateException("A checkpoint can only be restored into an empty projection");
+        }
+        Set<String> queuedForArchiving = new HashSet<>();
+        long position = GameInfoCheckpoint.read(file, new GameInfoCheckpoint.Visitor() {
+            @Override
+            public void game(GameInfo gameInfo) {
+                games.compute(gameInfo.gameId(), tracked((__, ___) -> gameInfo));
+            }
+
+            @Override
+            public void archivedGame(GameInfo gameInfo) {
+                if (archive == null) {
+                    game(gameInfo);
+                } else {
+                    archive.add(gameInfo);
+                    countByState.get(gameInfo.state()).increment();
+                }
+            }
+
+            @Override
+            public void endedGame(String gameId, Instant endedAt) {
+                if (endedGames != null && games.containsKey(gameId) && queuedForArchiving.add(gameId)) {
+                    endedGames.add(new EndedGame(gameId, endedAt));
+                    endedGameCount.incrementAndGet();
+                }
+            }
+        });
+        if (endedGames != null) {
+            // Games that ended while ended games were kept forever are queued as if they just ended
+            Instant now = Instant.now();
+            for (GameKey key : gamesByState.get(ENDED)) {
+                if (queuedForArchiving.add(key.gameId())) {
+                    endedGames.add(new EndedGame(key.gameId(), now));
+                    endedGameCount.incrementAndGet();
+                }
+            }
+            archiveEndedGames();
+        }
+        return OptionalLong.of(position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (archiveSweeper != null) {
+            archiveSweeper.shutdownNow();
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    /**
+     * Moves the games that ended longest ago to the archive while there are too many of them, or they're too old.
+     * Synchronized since games may end concurrently when events are processed in parallel.
+     */
+    private synchronized void archiveEndedGames() {
+        int maxEndedGames = retentionPolicy.maxEndedGames();
+        Instant archiveEndedBefore = retentionPolicy.hasMaxAge() ? Instant.now().minus(retentionPolicy.maxAge()) : Instant.MIN;
+        EndedGame oldest;
+        while ((oldest = endedGames.peek()) != null &&
+                ((maxEndedGames > 0 && endedGameCount.get() > maxEndedGames) || oldest.endedAt.isBefore(archiveEndedBefore))) {
+            endedGames.remove();
+            endedGameCount.decrementAndGet();
+            games.computeIfPresent(oldest.gameId, (__, gameInfo) -> {
+                archive.add(gameInfo);
+                gamesByState.get(gameInfo.state()).remove(GameKey.of(gameInfo));
+                return null;
+            });
+        }
+    }
+
+    private ScheduledExecutorService startArchiveSweeper() {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-info-archive-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                archiveEndedGames();
+            } catch (Exception e) {
+                log.error("Failed to archive ended games", e);
+            }
+        }, ARCHIVE_SWEEP_INTERVAL_MILLIS, ARCHIVE_SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return sweeper;
+    }
+
+    private static Path temporaryArchiveFile() {
+        try {
+            Path file = Files.createTempFile("game-archive", ".log");
+            file.toFile().deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create game archive", e);
+        }
+    }
+
+    private static class EndedGame {
+        private final String gameId;
+        private final Instant endedAt;
+
+        private EndedGame(String gameId, Instant endedAt) {
+            this.gameId = gameId;
+            this.endedAt = endedAt;
+        }
     }
 
     public static class Predicates {
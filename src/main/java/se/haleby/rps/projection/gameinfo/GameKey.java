@@ -0,0 +1,53 @@
+package se.haleby.rps.projection.gameinfo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * The position of a game in the listing order of games, i.e. by creation date and then by game id. Also used as an
+ * opaque cursor when paging through games.
+ */
+@Data
+@Accessors(fluent = true)
+public class GameKey implements Comparable<GameKey> {
+    private static final Comparator<GameKey> ORDER = Comparator.comparingLong(GameKey::createdAt).thenComparing(GameKey::gameId);
+
+    private final long createdAt;
+    private final String gameId;
+
+    static GameKey of(GameInfo gameInfo) {
+        return new GameKey(gameInfo.createdAt() == null ? 0 : gameInfo.createdAt().getTime(), gameInfo.gameId());
+    }
+
+    @Override
+    public int compareTo(GameKey other) {
+        return ORDER.compare(this, other);
+    }
+
+    public String encode() {
+        String key = createdAt + ":" + gameId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static GameKey decode(String cursor) {
+        final String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        int separator = key.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            return new GameKey(Long.parseLong(key.substring(0, separator)), key.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
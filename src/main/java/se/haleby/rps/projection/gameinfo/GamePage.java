@@ -0,0 +1,21 @@
+package se.haleby.rps.projection.gameinfo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+import java.util.Optional;
+
+@Data
+@Accessors(fluent = true)
+public class GamePage {
+    private final List<GameInfo> games;
+    private final GameKey next;
+
+    /**
+     * @return The cursor to pass to get the next page, or empty if this is the last page
+     */
+    public Optional<GameKey> next() {
+        return Optional.ofNullable(next);
+    }
+}
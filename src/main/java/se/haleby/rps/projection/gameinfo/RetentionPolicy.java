@@ -0,0 +1,38 @@
+package se.haleby.rps.projection.gameinfo;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Decides how many ended games {@link GameInfoProjection} keeps in memory. Games beyond the limits are moved, oldest
+ * ended first, to an archive file from where they can still be found by id but are no longer listed.
+ */
+@Data
+@Accessors(fluent = true)
+@Builder
+public class RetentionPolicy {
+    private static final RetentionPolicy UNLIMITED = RetentionPolicy.builder().build();
+
+    // Maximum number of ended games kept in memory, 0 means no limit
+    private final int maxEndedGames;
+    // Maximum time an ended game is kept in memory after it ended, null, zero or negative means no limit
+    private final Duration maxAge;
+    // File that archived games are written to, it's truncated when the projection is created
+    private final Path archiveFile;
+
+    public static RetentionPolicy unlimited() {
+        return UNLIMITED;
+    }
+
+    boolean isUnlimited() {
+        return maxEndedGames <= 0 && !hasMaxAge();
+    }
+
+    boolean hasMaxAge() {
+        return maxAge != null && !maxAge.isZero() && !maxAge.isNegative();
+    }
+}
@@ -0,0 +1,105 @@
+package se.haleby.rps.projection.gameinfo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of futures waiting for a game to reach a certain version.
+ * <p>
+ * A waiter is registered before the current version of the game is checked, and the projection notifies waiters only
+ * after an update is visible in its games map. So either the registering thread sees the new version or the updating
+ * thread sees the waiter, and no waiter is left behind.
+ */
+class VersionWaiters {
+    private static final ScheduledExecutorService TIMEOUTS = timeoutScheduler();
+
+    private final Map<String, List<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    CompletableFuture<GameInfo> await(String gameId, long version, Duration timeout, Supplier<Optional<GameInfo>> current) {
+        Optional<GameInfo> gameInfo = current.get();
+        if (gameInfo.isPresent() && gameInfo.get().hasReachedVersion(version)) {
+            return CompletableFuture.completedFuture(gameInfo.get());
+        }
+
+        Waiter waiter = new Waiter(version);
+        waiters.compute(gameId, (__, list) -> {
+            List<Waiter> waitersOfGame = list == null ? new ArrayList<>() : list;
+            waitersOfGame.add(waiter);
+            return waitersOfGame;
+        });
+        waiter.future.whenComplete((__, ___) -> remove(gameId, waiter));
+
+        current.get().filter(latest -> latest.hasReachedVersion(version)).ifPresent(waiter.future::complete);
+        if (!waiter.future.isDone()) {
+            ScheduledFuture<?> timeoutTask = TIMEOUTS.schedule(() -> waiter.future.completeExceptionally(new TimeoutException("Game " + gameId + " didn't reach version " + version + " within " + timeout)),
+                    timeout.toMillis(), TimeUnit.MILLISECONDS);
+            waiter.future.whenComplete((__, ___) -> timeoutTask.cancel(false));
+        }
+        return waiter.future;
+    }
+
+    /**
+     * @return The number of futures that are still waiting
+     */
+    int count() {
+        return waiters.values().stream().mapToInt(List::size).sum();
+    }
+
+    void versionReached(GameInfo gameInfo) {
+        if (gameInfo == null || waiters.isEmpty()) {
+            return;
+        }
+        List<Waiter> reached = new ArrayList<>();
+        waiters.computeIfPresent(gameInfo.gameId(), (__, list) -> {
+            list.removeIf(waiter -> {
+                boolean hasReached = gameInfo.hasReachedVersion(waiter.version);
+                if (hasReached) {
+                    reached.add(waiter);
+                }
+                return hasReached;
+            });
+            return list.isEmpty() ? null : list;
+        });
+        // Complete outside of the event handling thread, since dependent stages may do things like writing an HTTP response
+        reached.forEach(waiter -> ForkJoinPool.commonPool().execute(() -> waiter.future.complete(gameInfo)));
+    }
+
+    private void remove(String gameId, Waiter waiter) {
+        waiters.computeIfPresent(gameId, (__, list) -> {
+            list.remove(waiter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private static ScheduledExecutorService timeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "game-info-version-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Waiters are usually completed long before they time out, so don't keep their cancelled timeout tasks around
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static class Waiter {
+        private final long version;
+        private final CompletableFuture<GameInfo> future = new CompletableFuture<>();
+
+        private Waiter(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package se.haleby.rps.projection.playerstats;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import se.haleby.rps.domain.model.Move;
+
+/**
+ * The outcome of the games and rounds a player has played and how often the player has made each move. Instances are
+ * immutable, so every event concerning a player replaces the player's statistics.
+ */
+@Data
+@Accessors(fluent = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PlayerStats {
+    private static final long[] NO_MOVES = new long[Move.values().length];
+
+    private final String playerId;
+    private final long gamesWon;
+    private final long gamesLost;
+    private final long gamesTied;
+    private final long roundsWon;
+    private final long roundsLost;
+    private final long roundsTied;
+    // The number of times each move has been made, indexed by the ordinal of the move
+    @Getter(AccessLevel.NONE)
+    private final long[] moves;
+
+    static PlayerStats of(String playerId) {
+        return new PlayerStats(playerId, 0, 0, 0, 0, 0, 0, NO_MOVES);
+    }
+
+    public long gamesPlayed() {
+        return gamesWon + gamesLost + gamesTied;
+    }
+
+    public long moves(Move move) {
+        return moves[move.ordinal()];
+    }
+
+    PlayerStats withGameWon() {
+        return new PlayerStats(playerId, gamesWon + 1, gamesLost, gamesTied, roundsWon, roundsLost, roundsTied, moves);
+    }
+
+    PlayerStats withGameLost() {
+        return new PlayerStats(playerId, gamesWon, gamesLost + 1, gamesTied, roundsWon, roundsLost, roundsTied, moves);
+    }
+
+    PlayerStats withGameTied() {
+        return new PlayerStats(playerId, gamesWon, gamesLost, gamesTied + 1, roundsWon, roundsLost, roundsTied, moves);
+    }
+
+    PlayerStats withRoundWon() {
+        return new PlayerStats(playerId, gamesWon, gamesLost, gamesTied, roundsWon + 1, roundsLost, roundsTied, moves);
+    }
+
+    PlayerStats withRoundLost() {
+        return new PlayerStats(playerId, gamesWon, gamesLost, gamesTied, roundsWon, roundsLost + 1, roundsTied, moves);
+    }
+
+    PlayerStats withRoundTied() {
+        return new PlayerStats(playerId, gamesWon, gamesLost, gamesTied, roundsWon, roundsLost, roundsTied + 1, moves);
+    }
+
+    PlayerStats withMove(Move move) {
+        long[] movesAfter = moves.clone();
+        movesAfter[move.ordinal()]++;
+        return new PlayerStats(playerId, gamesWon, gamesLost, gamesTied, roundsWon, roundsLost, roundsTied, movesAfter);
+    }
+}
@@ -0,0 +1,129 @@
+package se.haleby.rps.projection.playerstats;
+
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import se.haleby.rps.domain.event.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the statistics of every player and a leaderboard ranking the players, both updated incrementally as games are
+ * played so that they can be queried without visiting the games.
+ */
+@ProcessingGroup(PlayerStatsProjection.PROCESSING_GROUP)
+public class PlayerStatsProjection {
+    public static final String PROCESSING_GROUP = "player-stats";
+
+    // Most games won first, then fewest games lost, and finally by player id so that no two players are ranked equal
+    private static final Comparator<PlayerStats> RANKING = Comparator.comparingLong(PlayerStats::gamesWon).reversed()
+            .thenComparingLong(PlayerStats::gamesLost)
+            .thenComparing(PlayerStats::playerId);
+
+    private final Map<String, PlayerStats> statsByPlayer = new ConcurrentHashMap<>();
+    // The statistics of every player in ranking order, maintained together with the statistics map
+    private final NavigableSet<PlayerStats> leaderboard = new ConcurrentSkipListSet<>(RANKING);
+    // The players of the games that haven't ended, since the outcome of a game or round only names the winner
+    private final Map<String, String[]> playersByGame = new ConcurrentHashMap<>();
+
+    @EventHandler
+    public void when(FirstPlayerJoinedGame evt) {
+        playersByGame.put(evt.getGameId(), new String[]{evt.getPlayer(), null});
+    }
+
+    @EventHandler
+    public void when(SecondPlayerJoinedGame evt) {
+        playersByGame.computeIfPresent(evt.getGameId(), (__, players) -> new String[]{players[0], evt.getPlayer()});
+    }
+
+    @EventHandler
+    public void when(MoveMade evt) {
+        update(evt.getPlayer(), stats -> stats.withMove(evt.getMove()));
+    }
+
+    @EventHandler
+    public void when(RoundWon evt) {
+        update(evt.getWinner(), PlayerStats::withRoundWon);
+        opponentOf(evt.getGameId(), evt.getWinner()).ifPresent(loser -> update(loser, PlayerStats::withRoundLost));
+    }
+
+    @EventHandler
+    public void when(RoundTied evt) {
+        forEachPlayer(evt.getGameId(), player -> update(player, PlayerStats::withRoundTied));
+    }
+
+    @EventHandler
+    public void when(GameWon evt) {
+        update(evt.getWinner(), PlayerStats::withGameWon);
+        opponentOf(evt.getGameId(), evt.getWinner()).ifPresent(loser -> update(loser, PlayerStats::withGameLost));
+    }
+
+    @EventHandler
+    public void when(GameTied evt) {
+        forEachPlayer(evt.getGameId(), player -> update(player, PlayerStats::withGameTied));
+    }
+
+    @EventHandler
+    public void when(GameEnded evt) {
+        // GameEnded is the last event of a game so its players are no longer needed
+        playersByGame.remove(evt.getGameId());
+    }
+
+    public Optional<PlayerStats> findByPlayerId(String playerId) {
+        return Optional.ofNullable(statsByPlayer.get(playerId));
+    }
+
+    /**
+     * @return The statistics of the {@code limit} highest ranked players, highest ranked first. The leaderboard is
+     * read without blocking updates so a player being updated concurrently may be missing from it.
+     */
+    public List<PlayerStats> leaderboard(int limit) {
+        return leaderboard.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    public int playerCount() {
+        return statsByPlayer.size();
+    }
+
+    /**
+     * Replace the statistics of a player, and its entry in the leaderboard which is ordered by the statistics, while
+     * holding the lock of the player in the statistics map so that concurrent updates of a player can't interleave.
+     */
+    private void update(String playerId, UnaryOperator<PlayerStats> change) {
+        statsByPlayer.compute(playerId, (__, stats) -> {
+            PlayerStats updated = change.apply(stats == null ? PlayerStats.of(playerId) : stats);
+            if (stats != null) {
+                leaderboard.remove(stats);
+            }
+            leaderboard.add(updated);
+            return updated;
+        });
+    }
+
+    private Optional<String> opponentOf(String gameId, String player) {
+        String[] players = playersByGame.get(gameId);
+        if (players == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(player.equals(players[0]) ? players[1] : players[0]);
+    }
+
+    private void forEachPlayer(String gameId, Consumer<String> action) {
+        String[] players = playersByGame.get(gameId);
+        if (players != null) {
+            for (String player : players) {
+                if (player != null) {
+                    action.accept(player);
+                }
+            }
+        }
+    }
+}
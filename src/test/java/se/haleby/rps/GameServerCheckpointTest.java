@@ -0,0 +1,144 @@
+package se.haleby.rps;
+
+import io.restassured.response.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import se.haleby.rps.GameServer.CmdArgs;
+import se.haleby.rps.GameServer.EventStoreType;
+import se.haleby.rps.GameServer.ProcessorType;
+import se.haleby.rps.domain.model.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static se.haleby.rps.domain.model.Move.ROCK;
+import static se.haleby.rps.domain.model.Move.SCISSORS;
+
+@DisplayName("Game server projection checkpoint")
+class GameServerCheckpointTest {
+    private Path directory;
+
+    @ParameterizedTest
+    @EnumSource(ProcessorType.class)
+    @DisplayName("restores the game info projection from the checkpoint and the events stored after it")
+    void restores_games_from_the_checkpoint_and_the_events_stored_after_it(ProcessorType processorType) throws InterruptedException {
+        Path checkpoint = directory.resolve("game-info.checkpoint");
+
+        // The checkpoint is written when the server is stopped
+        GameServer gameServer = new GameServer(args(processorType).projectionCheckpoint(checkpoint.toString())).start();
+        playGame(gameServer, "game1");
+        gameServer.stop();
+        assertThat(Files.exists(checkpoint), is(true));
+
+        // Games played by a server that doesn't write checkpoints are only in the event store
+        gameServer = new GameServer(args(processorType)).start();
+        playGame(gameServer, "game2");
+        gameServer.stop();
+
+        gameServer = new GameServer(args(processorType).projectionCheckpoint(checkpoint.toString())).start();
+        try {
+            List<String> endedGames = awaitEndedGames(gameServer, 2);
+            assertThat(endedGames, containsInAnyOrder("game1", "game2"));
+        } finally {
+            gameServer.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ProcessorType.class)
+    @DisplayName("replays all stored events when checkpoints are enabled for an existing event store")
+    void replays_all_events_when_there_is_no_checkpoint(ProcessorType processorType) throws InterruptedException {
+        Path checkpoint = directory.resolve("game-info.checkpoint");
+
+        GameServer gameServer = new GameServer(args(processorType)).start();
+        playGame(gameServer, "game1");
+        gameServer.stop();
+
+        // Started twice, first without a checkpoint file and then from the checkpoint written when it was stopped
+        for (int restart = 0; restart < 2; restart++) {
+            gameServer = new GameServer(args(processorType).projectionCheckpoint(checkpoint.toString())).start();
+            try {
+                assertThat(awaitEndedGames(gameServer, 1), contains("game1"));
+                assertThat(awaitGamesWon(gameServer, "player1", 1), equalTo(1));
+            } finally {
+                gameServer.stop();
+            }
+        }
+    }
+
+    private CmdArgs args(ProcessorType processorType) {
+        return CmdArgs.with()
+                .port(0)
+                .projectionProcessor(processorType)
+                .eventStore(EventStoreType.FILE)
+                .eventStoreDirectory(directory.resolve("events").toString());
+    }
+
+    private static List<String> awaitEndedGames(GameServer gameServer, int games) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<String> endedGames = endedGames(gameServer);
+        while (endedGames.size() < games && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            endedGames = endedGames(gameServer);
+        }
+        return endedGames;
+    }
+
+    private static int awaitGamesWon(GameServer gameServer, String playerId, int games) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        int gamesWon = gamesWon(gameServer, playerId);
+        while (gamesWon < games && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            gamesWon = gamesWon(gameServer, playerId);
+        }
+        return gamesWon;
+    }
+
+    private static int gamesWon(GameServer gameServer, String playerId) {
+        Response response = given().when().get(url(gameServer) + "/api/players/{playerId}", playerId);
+        return response.statusCode() == 404 ? 0 : response.then().statusCode(200).extract().path("gamesWon");
+    }
+
+    private static List<String> endedGames(GameServer gameServer) {
+        return given().queryParam("state", "ended").when().get(url(gameServer) + "/api/games").then().statusCode(200).extract().path("gameId");
+    }
+
+    private static void playGame(GameServer gameServer, String gameId) {
+        given().header("player", "player1").when().put(url(gameServer) + "/api/games/{gameId}", gameId).then().statusCode(200);
+        makeMove(gameServer, gameId, "player1", ROCK).then().statusCode(200);
+        makeMove(gameServer, gameId, "player2", SCISSORS).then().statusCode(200);
+        makeMove(gameServer, gameId, "player1", ROCK).then().statusCode(200);
+        makeMove(gameServer, gameId, "player2", SCISSORS).then().statusCode(200).body("state", equalTo("ended"));
+    }
+
+    private static Response makeMove(GameServer gameServer, String gameId, String player, Move move) {
+        return given().header("player", player).formParam("move", move).when().put(url(gameServer) + "/api/games/{gameId}", gameId);
+    }
+
+    private static String url(GameServer gameServer) {
+        return "http://localhost:" + gameServer.port();
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("checkpoint");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
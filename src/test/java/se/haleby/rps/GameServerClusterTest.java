@@ -0,0 +1,91 @@
+package se.haleby.rps;
+
+import io.restassured.response.Response;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.GameServer.CmdArgs;
+import se.haleby.rps.GameServer.ProcessorType;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.cluster.ClusterCommands;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.restassured.RestAssured.given;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static se.haleby.rps.domain.model.Move.ROCK;
+import static se.haleby.rps.domain.model.Move.SCISSORS;
+
+@DisplayName("Game server cluster")
+class GameServerClusterTest {
+    private static final List<String> NODES = asList("http://localhost:8081", "http://localhost:8082", "http://localhost:8083");
+    private static final int GAMES = 20;
+
+    private List<GameServer> gameServers;
+
+    @BeforeEach
+    void startCluster() {
+        InMemoryEventStorageEngine sharedEventStorageEngine = new InMemoryEventStorageEngine();
+        gameServers = IntStream.range(0, NODES.size())
+                .mapToObj(i -> new GameServer(CmdArgs.with()
+                        .port(8081 + i)
+                        .projectionProcessor(ProcessorType.TRACKING)
+                        .clusterNodes(NODES)
+                        .clusterNode(NODES.get(i)), sharedEventStorageEngine).start())
+                .collect(Collectors.toList());
+    }
+
+    @AfterEach
+    void stopCluster() {
+        gameServers.forEach(GameServer::stop);
+    }
+
+    @Test
+    @DisplayName("plays games through one node while the games are handled by the nodes owning them")
+    void games_played_through_one_node_are_handled_by_owning_nodes_and_visible_on_all_nodes() throws InterruptedException {
+        String node = NODES.get(0);
+        for (int i = 0; i < GAMES; i++) {
+            String gameId = "game-" + i;
+            startGame(node, gameId).then().statusCode(200);
+            makeMove(node, gameId, "player1", ROCK).then().statusCode(200);
+            makeMove(node, gameId, "player2", SCISSORS).then().statusCode(200);
+            makeMove(node, gameId, "player1", ROCK).then().statusCode(200);
+            makeMove(node, gameId, "player2", SCISSORS).then().statusCode(200).body("state", equalTo("ended")).body("winner", equalTo("player1"));
+        }
+
+        // Every node owns some of the games, so every node but the one played through has received commands from it
+        for (int i = 1; i < NODES.size(); i++) {
+            assertThat(gameServers.get(i).metrics().timer("http.server.requests", "method", "POST", "route", ClusterCommands.PATH + "/:command").count(), greaterThan(0L));
+        }
+        // The projections of every node are fed from the shared event store
+        for (String otherNode : NODES) {
+            awaitEndedGames(otherNode);
+        }
+    }
+
+    private static void awaitEndedGames(String node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (endedGames(node) < GAMES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(endedGames(node), equalTo(GAMES));
+    }
+
+    private static int endedGames(String node) {
+        return given().queryParam("state", "ended").when().get(node + "/api/games").then().statusCode(200).extract().path("size()");
+    }
+
+    private static Response startGame(String node, String gameId) {
+        return given().header("player", "player1").when().put(node + "/api/games/{gameId}", gameId);
+    }
+
+    private static Response makeMove(String node, String gameId, String player, Move move) {
+        return given().header("player", player).formParam("move", move).when().put(node + "/api/games/{gameId}", gameId);
+    }
+}
@@ -0,0 +1,93 @@
+package se.haleby.rps;
+
+import io.restassured.response.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import se.haleby.rps.GameServer.CmdArgs;
+import se.haleby.rps.GameServer.EventStoreType;
+import se.haleby.rps.domain.model.Move;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static se.haleby.rps.domain.model.Move.ROCK;
+import static se.haleby.rps.domain.model.Move.SCISSORS;
+
+@DisplayName("Game server restart")
+class GameServerRestartTest {
+    private Path directory;
+
+    @ParameterizedTest
+    @EnumSource(value = EventStoreType.class, names = {"FILE", "JDBC"})
+    @DisplayName("keeps the games and player statistics of a durable event store")
+    void keeps_games_and_player_statistics_of_a_durable_event_store(EventStoreType eventStoreType) {
+        GameServer gameServer = new GameServer(args(eventStoreType)).start();
+        try {
+            startGame(gameServer, "game1").then().statusCode(200);
+            makeMove(gameServer, "game1", "player1", ROCK).then().statusCode(200);
+            makeMove(gameServer, "game1", "player2", SCISSORS).then().statusCode(200);
+            makeMove(gameServer, "game1", "player1", ROCK).then().statusCode(200);
+            makeMove(gameServer, "game1", "player2", SCISSORS).then().statusCode(200).body("state", equalTo("ended"));
+            startGame(gameServer, "game2").then().statusCode(200);
+        } finally {
+            gameServer.stop();
+        }
+
+        // Neither --rebuild-projections nor --projection-checkpoint is used
+        gameServer = new GameServer(args(eventStoreType)).start();
+        try {
+            given().when().get(url(gameServer) + "/api/games").then().
+                    statusCode(200).
+                    body("gameId", containsInAnyOrder("game1", "game2"));
+            given().when().get(url(gameServer) + "/api/players/{playerId}", "player1").then().
+                    statusCode(200).
+                    body("gamesWon", equalTo(1));
+            makeMove(gameServer, "game2", "player1", ROCK).then().
+                    statusCode(200).
+                    body("player1", equalTo("player1"));
+        } finally {
+            gameServer.stop();
+        }
+    }
+
+    private CmdArgs args(EventStoreType eventStoreType) {
+        return CmdArgs.with()
+                .port(0)
+                .eventStore(eventStoreType)
+                .eventStoreDirectory(directory.resolve("events").toString())
+                .eventStoreUrl("jdbc:h2:file:" + directory.resolve("events").toAbsolutePath() + ";AUTO_SERVER=TRUE");
+    }
+
+    private static Response startGame(GameServer gameServer, String gameId) {
+        return given().header("player", "player1").when().put(url(gameServer) + "/api/games/{gameId}", gameId);
+    }
+
+    private static Response makeMove(GameServer gameServer, String gameId, String player, Move move) {
+        return given().header("player", player).formParam("move", move).when().put(url(gameServer) + "/api/games/{gameId}", gameId);
+    }
+
+    private static String url(GameServer gameServer) {
+        return "http://localhost:" + gameServer.port();
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("restart");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
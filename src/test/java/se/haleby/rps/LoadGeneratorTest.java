@@ -0,0 +1,37 @@
+package se.haleby.rps;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.GameServer.HttpMode;
+import se.haleby.rps.LoadGenerator.Endpoint;
+import se.haleby.rps.LoadGenerator.Report;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+@DisplayName("Load generator")
+class LoadGeneratorTest {
+
+    @Test
+    @DisplayName("plays games against an in-process game server on a free port")
+    void plays_games_against_in_process_game_server() throws InterruptedException {
+        Report report = new LoadGenerator(LoadGenerator.CmdArgs.with().games(4).warmup(0).duration(2)).run();
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            assertThat(report.requests(endpoint), greaterThan(0L));
+            assertThat(report.errors(endpoint), equalTo(0L));
+        }
+    }
+
+    @Test
+    @DisplayName("plays games against an in-process game server in async HTTP mode with fewer request threads than games")
+    void plays_games_against_in_process_game_server_in_async_http_mode() throws InterruptedException {
+        Report report = new LoadGenerator(LoadGenerator.CmdArgs.with().games(32).httpMode(HttpMode.ASYNC).httpThreads(16).warmup(0).duration(2)).run();
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            assertThat(report.requests(endpoint), greaterThan(0L));
+            assertThat(report.errors(endpoint), equalTo(0L));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package se.haleby.rps.infrastructure.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DisplayName("Bounded cache")
+class BoundedCacheTest {
+
+    @Nested
+    @DisplayName("evicts entries")
+    class EvictsEntries {
+
+        @Test
+        @DisplayName("that were least recently used when full")
+        void least_recently_used_entries_are_evicted_when_full() {
+            BoundedCache cache = new BoundedCache(2, 0);
+            cache.put("game1", "1");
+            cache.put("game2", "2");
+            cache.get("game1");
+
+            cache.put("game3", "3");
+
+            assertThat(cache.containsKey("game1"), is(true));
+            assertThat(cache.containsKey("game2"), is(false));
+            assertThat(cache.containsKey("game3"), is(true));
+            assertThat(cache.size(), equalTo(2));
+        }
+
+        @Test
+        @DisplayName("that haven't been used within the idle timeout")
+        void idle_entries_are_expired() {
+            AtomicLong nanoTime = new AtomicLong();
+            BoundedCache cache = new BoundedCache(10, 50, nanoTime::get);
+            cache.put("game1", "1");
+            cache.put("game2", "2");
+
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+            cache.get("game2");
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+
+            assertThat(cache.<String, String>get("game1"), nullValue());
+            assertThat(cache.<String, String>get("game2"), equalTo("2"));
+            assertThat(cache.size(), equalTo(1));
+        }
+    }
+}
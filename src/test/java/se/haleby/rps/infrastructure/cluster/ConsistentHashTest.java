@@ -0,0 +1,50 @@
+package se.haleby.rps.infrastructure.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DisplayName("Consistent hash")
+class ConsistentHashTest {
+    private static final int KEYS = 30_000;
+
+    @Test
+    @DisplayName("maps keys to the same node regardless of the order of the nodes")
+    void keys_are_mapped_to_the_same_node_regardless_of_order_of_nodes() {
+        ConsistentHash consistentHash = new ConsistentHash(asList("node1", "node2", "node3"));
+        ConsistentHash reordered = new ConsistentHash(asList("node3", "node1", "node2"));
+
+        IntStream.range(0, KEYS).mapToObj(i -> "game" + i)
+                .forEach(key -> assertThat(reordered.nodeOf(key), equalTo(consistentHash.nodeOf(key))));
+    }
+
+    @Test
+    @DisplayName("spreads keys evenly over the nodes")
+    void keys_are_spread_evenly() {
+        ConsistentHash consistentHash = new ConsistentHash(asList("node1", "node2", "node3"));
+
+        Map<String, Integer> keysPerNode = new HashMap<>();
+        IntStream.range(0, KEYS).mapToObj(i -> "game" + i).forEach(key -> keysPerNode.merge(consistentHash.nodeOf(key), 1, Integer::sum));
+
+        assertThat(keysPerNode.keySet(), containsInAnyOrder("node1", "node2", "node3"));
+        keysPerNode.values().forEach(keys -> assertThat(keys, both(greaterThan(KEYS / 3 * 8 / 10)).and(lessThan(KEYS / 3 * 12 / 10))));
+    }
+
+    @Test
+    @DisplayName("only moves the keys of a node that is removed")
+    void only_keys_of_removed_node_are_moved() {
+        ConsistentHash consistentHash = new ConsistentHash(asList("node1", "node2", "node3"));
+        ConsistentHash withoutNode3 = new ConsistentHash(asList("node1", "node2"));
+
+        IntStream.range(0, KEYS).mapToObj(i -> "game" + i)
+                .filter(key -> !consistentHash.nodeOf(key).equals("node3"))
+                .forEach(key -> assertThat(withoutNode3.nodeOf(key), equalTo(consistentHash.nodeOf(key))));
+    }
+}
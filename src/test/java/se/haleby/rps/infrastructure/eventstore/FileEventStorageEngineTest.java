@@ -0,0 +1,149 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import org.axonframework.commandhandling.model.ConcurrencyException;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.domain.event.GameCreated;
+import se.haleby.rps.domain.event.MoveMade;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.haleby.rps.domain.model.Move.ROCK;
+
+@DisplayName("File event storage engine")
+class FileEventStorageEngineTest {
+
+    private Path directory;
+    private FileEventStorageEngine engine;
+
+    @Nested
+    @DisplayName("reads back events")
+    class ReadsBackEvents {
+
+        @Test
+        void of_a_single_aggregate_from_a_given_sequence_number() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1), moveMade("game2", 0), moveMade("game1", 2)));
+
+            List<DomainEventMessage<?>> events = engine.readEvents("game1", 1).asStream().collect(Collectors.toList());
+
+            assertThat(events.stream().map(DomainEventMessage::getSequenceNumber).collect(Collectors.toList()), contains(1L, 2L));
+            assertThat(events.get(0).getPayload(), instanceOf(MoveMade.class));
+        }
+
+        @Test
+        void in_global_order_after_a_tracking_token() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game2", 0), moveMade("game1", 1)));
+
+            List<String> aggregateIdentifiers = engine.readEvents(new GlobalSequenceTrackingToken(0), false)
+                    .map(event -> ((DomainEventMessage<?>) event).getAggregateIdentifier())
+                    .collect(Collectors.toList());
+
+            assertThat(aggregateIdentifiers, contains("game2", "game1"));
+        }
+
+        @Test
+        void across_segments() {
+            engine.close();
+            engine = new FileEventStorageEngine(directory, new XStreamSerializer(), 4096, false);
+
+            for (int sequenceNumber = 0; sequenceNumber < 100; sequenceNumber++) {
+                engine.appendEvents(moveMade("game1", sequenceNumber));
+            }
+
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(100L));
+            assertThat(segmentFiles(), greaterThan(1L));
+        }
+
+        @Test
+        void after_being_reopened() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1)));
+            engine.storeSnapshot(moveMade("game1", 1));
+
+            engine.close();
+            engine = new FileEventStorageEngine(directory);
+            engine.appendEvents(moveMade("game1", 2));
+
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(3L));
+            assertThat(engine.readSnapshot("game1").map(DomainEventMessage::getSequenceNumber).orElse(-1L), is(1L));
+            List<Long> globalIndexes = engine.readEvents(null, false).map(TrackedEventMessage::trackingToken).map(token -> ((GlobalSequenceTrackingToken) token).getGlobalIndex()).collect(Collectors.toList());
+            assertThat(globalIndexes, contains(0L, 1L, 2L));
+        }
+    }
+
+    @Nested
+    @DisplayName("rejects events")
+    class RejectsEvents {
+
+        @Test
+        void when_the_sequence_number_has_already_been_used() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1)));
+
+            assertThrows(ConcurrencyException.class, () -> engine.appendEvents(moveMade("game1", 1)));
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(2L));
+        }
+
+        @Test
+        void all_together_when_one_of_them_doesnt_fit_in_a_segment() {
+            engine.close();
+            engine = new FileEventStorageEngine(directory, new XStreamSerializer(), 4096, false);
+            String tooLongGameId = String.join("", Collections.nCopies(4096, "g"));
+
+            assertThrows(EventStoreException.class, () -> engine.appendEvents(asList(moveMade("game1", 0), gameCreated(tooLongGameId, 0))));
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(0L));
+            assertThat(engine.readEvents(null, false).count(), is(0L));
+        }
+    }
+
+    // Test configuration and helpers
+
+    @BeforeEach
+    void openEngine() throws IOException {
+        directory = Files.createTempDirectory("events");
+        engine = new FileEventStorageEngine(directory);
+    }
+
+    @AfterEach
+    void closeEngine() throws IOException {
+        engine.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private long segmentFiles() {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.count();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static DomainEventMessage<?> gameCreated(String gameId, long sequenceNumber) {
+        return new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build());
+    }
+
+    private static DomainEventMessage<?> moveMade(String gameId, long sequenceNumber) {
+        return new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, MoveMade.builder().gameId(gameId).player("player1").round(1).move(ROCK).build());
+    }
+}
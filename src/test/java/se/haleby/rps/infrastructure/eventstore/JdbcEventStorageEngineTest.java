@@ -0,0 +1,174 @@
+package se.haleby.rps.infrastructure.eventstore;
+
+import org.axonframework.commandhandling.model.ConcurrencyException;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.domain.event.GameCreated;
+import se.haleby.rps.domain.event.MoveMade;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.haleby.rps.domain.model.Move.ROCK;
+
+@DisplayName("JDBC event storage engine")
+class JdbcEventStorageEngineTest {
+
+    private String url;
+    private JdbcEventStorageEngine engine;
+
+    @Nested
+    @DisplayName("reads back events")
+    class ReadsBackEvents {
+
+        @Test
+        void of_a_single_aggregate_from_a_given_sequence_number() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1), moveMade("game2", 0), moveMade("game1", 2)));
+
+            List<DomainEventMessage<?>> events = engine.readEvents("game1", 1).asStream().collect(Collectors.toList());
+
+            assertThat(events.stream().map(DomainEventMessage::getSequenceNumber).collect(Collectors.toList()), contains(1L, 2L));
+            assertThat(events.get(0).getPayload(), instanceOf(MoveMade.class));
+            assertThat(engine.lastSequenceNumberFor("game1").orElse(-1L), is(2L));
+        }
+
+        @Test
+        void in_global_order_after_a_tracking_token() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game2", 0), moveMade("game1", 1)));
+
+            List<String> aggregateIdentifiers = engine.readEvents(new GlobalSequenceTrackingToken(0), false)
+                    .map(event -> ((DomainEventMessage<?>) event).getAggregateIdentifier())
+                    .collect(Collectors.toList());
+
+            assertThat(aggregateIdentifiers, contains("game2", "game1"));
+        }
+
+        @Test
+        void in_batches() {
+            engine.close();
+            JdbcConnectionPool connectionPool = JdbcConnectionPool.create(url, "sa", "");
+            engine = new JdbcEventStorageEngine(connectionPool, new XStreamSerializer(), 10, connectionPool::dispose);
+
+            for (int sequenceNumber = 0; sequenceNumber < 25; sequenceNumber++) {
+                engine.appendEvents(moveMade("game1", sequenceNumber));
+            }
+
+            assertThat(engine.readEvents(null, false).count(), is(25L));
+            assertThat(engine.readEvents(new GlobalSequenceTrackingToken(19), false).count(), is(5L));
+        }
+
+        @Test
+        void and_the_latest_snapshot() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1), moveMade("game1", 2)));
+            engine.storeSnapshot(moveMade("game1", 1));
+            engine.storeSnapshot(moveMade("game1", 2));
+
+            assertThat(engine.readSnapshot("game1").map(DomainEventMessage::getSequenceNumber).orElse(-1L), is(2L));
+            assertThat(engine.readSnapshot("game2").isPresent(), is(false));
+        }
+
+        @Test
+        void appended_by_another_engine_sharing_the_database() {
+            JdbcEventStorageEngine otherEngine = JdbcEventStorageEngine.h2(url, 2, new XStreamSerializer());
+            try {
+                engine.appendEvents(gameCreated("game1", 0));
+                otherEngine.appendEvents(gameCreated("game2", 0));
+                engine.appendEvents(moveMade("game1", 1));
+
+                assertThat(globalIndexes(otherEngine), contains(0L, 1L, 2L));
+                assertThat(((GlobalSequenceTrackingToken) otherEngine.createHeadToken()).getGlobalIndex(), is(2L));
+            } finally {
+                otherEngine.close();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("rejects events")
+    class RejectsEvents {
+
+        @Test
+        void when_the_sequence_number_has_already_been_used() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1)));
+
+            assertThrows(ConcurrencyException.class, () -> engine.appendEvents(moveMade("game1", 1)));
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(2L));
+        }
+
+        @Test
+        void all_together_when_one_of_them_has_a_sequence_number_already_used() {
+            engine.appendEvents(asList(gameCreated("game1", 0), moveMade("game1", 1)));
+
+            assertThrows(ConcurrencyException.class, () -> engine.appendEvents(asList(moveMade("game2", 0), moveMade("game1", 1), moveMade("game1", 2))));
+            assertThat(engine.readEvents("game1", 0).asStream().count(), is(2L));
+            assertThat(engine.readEvents("game2", 0).asStream().count(), is(0L));
+        }
+    }
+
+    @Test
+    @DisplayName("assigns consecutive global indexes to events appended concurrently by engines sharing the database")
+    void assigns_consecutive_global_indexes_to_events_appended_concurrently() throws Exception {
+        JdbcEventStorageEngine otherEngine = JdbcEventStorageEngine.h2(url, 4, new XStreamSerializer());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> appends = LongStream.range(0, 4).mapToObj(thread -> executor.submit(() -> {
+                JdbcEventStorageEngine appendingEngine = thread % 2 == 0 ? engine : otherEngine;
+                for (int sequenceNumber = 0; sequenceNumber < 50; sequenceNumber++) {
+                    appendingEngine.appendEvents(asList(moveMade("game" + thread, sequenceNumber * 2), moveMade("game" + thread, sequenceNumber * 2 + 1)));
+                }
+            })).collect(Collectors.toList());
+            for (Future<?> append : appends) {
+                append.get();
+            }
+
+            assertThat(globalIndexes(engine), equalTo(LongStream.range(0, 400).boxed().collect(Collectors.toList())));
+        } finally {
+            executor.shutdownNow();
+            otherEngine.close();
+        }
+    }
+
+    // Test configuration and helpers
+
+    @BeforeEach
+    void openEngine() {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        engine = JdbcEventStorageEngine.h2(url, 4, new XStreamSerializer());
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private static List<Long> globalIndexes(JdbcEventStorageEngine engine) {
+        return engine.readEvents(null, false).map(TrackedEventMessage::trackingToken).map(token -> ((GlobalSequenceTrackingToken) token).getGlobalIndex()).collect(Collectors.toList());
+    }
+
+    private static DomainEventMessage<?> gameCreated(String gameId, long sequenceNumber) {
+        return new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, GameCreated.builder().gameId(gameId).createdBy("player1").rounds(3).createdAt(new Date()).build());
+    }
+
+    private static DomainEventMessage<?> moveMade(String gameId, long sequenceNumber) {
+        return new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, MoveMade.builder().gameId(gameId).player("player1").round(1).move(ROCK).build());
+    }
+}
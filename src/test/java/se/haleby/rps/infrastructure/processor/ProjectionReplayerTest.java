@@ -0,0 +1,114 @@
+package se.haleby.rps.infrastructure.processor;
+
+import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventsourcing.DomainEventMessage;
+import org.axonframework.eventsourcing.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.inmemory.InMemoryEventStorageEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.domain.event.*;
+import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.infrastructure.processor.ProjectionReplayer.Replay;
+import se.haleby.rps.projection.gameinfo.GameInfoProjection;
+import se.haleby.rps.projection.gameinfo.GameInfoState;
+import se.haleby.rps.projection.playerstats.PlayerStats;
+import se.haleby.rps.projection.playerstats.PlayerStatsProjection;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Projection replayer")
+class ProjectionReplayerTest {
+    private static final int GAMES = 100;
+    private static final int EVENTS_PER_GAME = 10;
+
+    @Test
+    @DisplayName("applies the events of every game in order to all projections")
+    void applies_the_events_of_every_game_in_order_to_all_projections() {
+        InMemoryEventStorageEngine eventStorageEngine = new InMemoryEventStorageEngine();
+        eventStorageEngine.appendEvents(interleavedGames());
+        GameInfoProjection gameInfoProjection = new GameInfoProjection();
+        PlayerStatsProjection playerStatsProjection = new PlayerStatsProjection();
+
+        // A batch size that doesn't divide the number of events, and splits games between batches
+        Replay replay = new ProjectionReplayer(eventStorageEngine, 4, 7).replay(gameInfoProjection, playerStatsProjection);
+
+        assertThat(replay.events(), is((long) GAMES * EVENTS_PER_GAME));
+        assertThat(((GlobalSequenceTrackingToken) replay.lastToken()).getGlobalIndex(), is((long) GAMES * EVENTS_PER_GAME - 1));
+        assertThat(gameInfoProjection.count(GameInfoState.ENDED), is((long) GAMES));
+        PlayerStats player1 = playerStatsProjection.findByPlayerId("player1").orElseThrow(AssertionError::new);
+        assertThat(player1.gamesWon(), is((long) GAMES));
+        assertThat(player1.moves(Move.ROCK), is((long) GAMES));
+        assertThat(playerStatsProjection.findByPlayerId("player2").map(PlayerStats::gamesLost).orElse(0L), is((long) GAMES));
+    }
+
+    @Test
+    @DisplayName("returns no token when there are no events to replay")
+    void returns_no_token_when_there_are_no_events() {
+        Replay replay = new ProjectionReplayer(new InMemoryEventStorageEngine(), 4, 7).replay(new GameInfoProjection());
+
+        assertThat(replay.events(), is(0L));
+        assertThat(replay.lastToken(), nullValue());
+    }
+
+    @Test
+    @DisplayName("fails when an event handler fails")
+    void fails_when_an_event_handler_fails() {
+        InMemoryEventStorageEngine eventStorageEngine = new InMemoryEventStorageEngine();
+        eventStorageEngine.appendEvents(interleavedGames());
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> new ProjectionReplayer(eventStorageEngine, 4, 7).replay(new FailingProjection()));
+
+        assertThat(failure.getCause(), instanceOf(UnsupportedOperationException.class));
+    }
+
+    static class FailingProjection {
+        @EventHandler
+        public void when(GameEnded evt) {
+            throw new UnsupportedOperationException("Can't handle " + evt);
+        }
+    }
+
+    // The events of all games in the order they would be stored if the games were played concurrently
+    private static List<DomainEventMessage<?>> interleavedGames() {
+        List<DomainEventMessage<?>> events = new ArrayList<>(GAMES * EVENTS_PER_GAME);
+        for (int sequenceNumber = 0; sequenceNumber < EVENTS_PER_GAME; sequenceNumber++) {
+            for (int game = 0; game < GAMES; game++) {
+                String gameId = "game" + game;
+                events.add(new GenericDomainEventMessage<>("Game", gameId, sequenceNumber, eventOfGame(gameId, sequenceNumber)));
+            }
+        }
+        return events;
+    }
+
+    private static Object eventOfGame(String gameId, int sequenceNumber) {
+        switch (sequenceNumber) {
+            case 0:
+                return GameCreated.builder().gameId(gameId).createdBy("player1").rounds(1).createdAt(new Date()).build();
+            case 1:
+                return RoundStarted.builder().gameId(gameId).roundNumber(1).build();
+            case 2:
+                return FirstPlayerJoinedGame.builder().gameId(gameId).player("player1").build();
+            case 3:
+                return MoveMade.builder().gameId(gameId).round(1).player("player1").move(Move.ROCK).build();
+            case 4:
+                return SecondPlayerJoinedGame.builder().gameId(gameId).player("player2").build();
+            case 5:
+                return MoveMade.builder().gameId(gameId).round(1).player("player2").move(Move.SCISSORS).build();
+            case 6:
+                return RoundWon.builder().gameId(gameId).roundNumber(1).winner("player1").build();
+            case 7:
+                return RoundEnded.builder().gameId(gameId).roundNumber(1).build();
+            case 8:
+                return GameWon.builder().gameId(gameId).winner("player1").build();
+            default:
+                return GameEnded.withGameId(gameId);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package se.haleby.rps.infrastructure.serialization;
+
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import se.haleby.rps.domain.event.*;
+import se.haleby.rps.domain.model.Move;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static se.haleby.rps.domain.model.Move.PAPER;
+import static se.haleby.rps.domain.model.Move.ROCK;
+
+@DisplayName("Binary event serializer")
+class BinaryEventSerializerTest {
+
+    private final BinaryEventSerializer serializer = new BinaryEventSerializer(new XStreamSerializer());
+
+    @Nested
+    @DisplayName("reads back")
+    class ReadsBack {
+
+        @Test
+        @DisplayName("all game events")
+        void all_game_events() {
+            List<Object> events = Arrays.asList(
+                    GameCreated.builder().gameId("game").createdBy("player1").rounds(3).createdAt(new Date()).build(),
+                    FirstPlayerJoinedGame.builder().gameId("game").player("player1").build(),
+                    SecondPlayerJoinedGame.builder().gameId("game").player("player2").build(),
+                    RoundStarted.builder().gameId("game").roundNumber(1).build(),
+                    MoveMade.builder().gameId("game").round(1).player("player1").move(ROCK).build(),
+                    RoundWon.builder().gameId("game").roundNumber(1).winner("player1").build(),
+                    RoundTied.builder().gameId("game").roundNumber(2).build(),
+                    RoundEnded.builder().gameId("game").roundNumber(1).build(),
+                    GameWon.builder().gameId("game").winner("player1").build(),
+                    GameTied.withGameId("game"),
+                    GameEnded.withGameId("game"));
+
+            for (Object event : events) {
+                SerializedObject<byte[]> serialized = serializer.serialize(event, byte[].class);
+                assertThat(serializer.deserialize(serialized), equalTo(event));
+            }
+        }
+
+        @Test
+        @DisplayName("meta data and events serialized by the delegate")
+        void objects_serialized_by_the_delegate() {
+            XStreamSerializer xStream = new XStreamSerializer();
+            MoveMade moveMade = MoveMade.builder().gameId("game").round(1).player("player1").move(ROCK).build();
+            MetaData metaData = MetaData.with("key", "value");
+
+            assertThat(serializer.deserialize(xStream.serialize(moveMade, byte[].class)), equalTo(moveMade));
+            assertThat(serializer.deserialize(serializer.serialize(metaData, byte[].class)), equalTo(metaData));
+        }
+
+        @Test
+        @DisplayName("events of an older version by upcasting them")
+        void events_of_an_older_version() {
+            // Version 1 of MoveMade didn't have a round, version 2 adds it
+            EventCodec<MoveMade> version1 = EventCodec.of(MoveMade.class, "MoveMade", 1,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeString(evt.getPlayer()).writeEnum(evt.getMove()),
+                    in -> MoveMade.builder().gameId(in.readString()).player(in.readString()).move(in.readEnum(Move.values())).build());
+            EventCodec<MoveMade> version2 = EventCodec.of(MoveMade.class, "MoveMade", 2,
+                    (evt, out) -> out.writeString(evt.getGameId()).writeVarInt(evt.getRound()).writeString(evt.getPlayer()).writeEnum(evt.getMove()),
+                    in -> MoveMade.builder().gameId(in.readString()).round(in.readVarInt()).player(in.readString()).move(in.readEnum(Move.values())).build());
+            Upcaster addRound = new Upcaster() {
+                @Override
+                public String type() {
+                    return "MoveMade";
+                }
+
+                @Override
+                public int fromVersion() {
+                    return 1;
+                }
+
+                @Override
+                public byte[] upcast(byte[] event) {
+                    BinaryReader in = new BinaryReader(event);
+                    return new BinaryWriter().writeString(in.readString()).writeVarInt(1).writeString(in.readString()).writeEnum(in.readEnum(Move.values())).toByteArray();
+                }
+            };
+            BinaryEventSerializer oldSerializer = new BinaryEventSerializer(new XStreamSerializer(), Collections.singletonList(version1), Collections.emptyList());
+            BinaryEventSerializer newSerializer = new BinaryEventSerializer(new XStreamSerializer(), Collections.singletonList(version2), Collections.singletonList(addRound));
+
+            SerializedObject<byte[]> serialized = oldSerializer.serialize(MoveMade.builder().gameId("game").player("player1").move(PAPER).build(), byte[].class);
+
+            assertThat(newSerializer.deserialize(serialized), equalTo(MoveMade.builder().gameId("game").round(1).player("player1").move(PAPER).build()));
+        }
+    }
+
+    @Test
+    @DisplayName("writes a move in fewer bytes than XStream")
+    void writes_a_move_in_fewer_bytes_than_xstream() {
+        MoveMade moveMade = MoveMade.builder().gameId("d8c3f6f0-4b1e-4a8e-9d1c-0f8a3c2e7b51").round(1).player("player1").move(ROCK).build();
+
+        int binarySize = serializer.serialize(moveMade, byte[].class).getData().length;
+
+        assertThat(binarySize, lessThan(new XStreamSerializer().serialize(moveMade, byte[].class).getData().length / 4));
+    }
+}
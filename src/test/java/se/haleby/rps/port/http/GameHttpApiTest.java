@@ -1,7 +1,12 @@
 package se.haleby.rps.port.http;
 
+import io.javalin.staticfiles.Location;
 import io.restassured.RestAssured;
+import io.restassured.path.json.JsonPath;
 import io.restassured.response.Response;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -9,16 +14,37 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.*;
 import se.haleby.rps.GameServer;
 import se.haleby.rps.GameServer.CmdArgs;
+import se.haleby.rps.GameServer.CommandBusType;
+import se.haleby.rps.GameServer.HttpMode;
+import se.haleby.rps.GameServer.ProcessorType;
+import se.haleby.rps.application.GameApplicationService;
 import se.haleby.rps.domain.model.Move;
+import se.haleby.rps.projection.gameinfo.GameInfoProjection;
 import se.haleby.rps.projection.gameinfo.GameInfoState;
+import se.haleby.rps.projection.playerstats.PlayerStatsProjection;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.*;
+import static java.util.Arrays.asList;
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static org.exparity.hamcrest.date.DateMatchers.within;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static se.haleby.rps.domain.model.Move.*;
 import static se.haleby.rps.projection.gameinfo.GameInfoState.*;
@@ -78,6 +104,124 @@ class GameHttpApiTest {
             makeMove(gameId, "player1", PAPER);
             makeMove(gameId, "player2", SCISSORS);
         }
+
+        @Test
+        @DisplayName("until game is ended when games are loaded from snapshots")
+        void example_of_full_game_with_snapshots() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).snapshotThreshold(2)).start();
+            UUID gameId = UUID.randomUUID();
+            startGame(gameId);
+
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", ROCK);
+
+            makeMove(gameId, "player1", SCISSORS);
+            makeMove(gameId, "player2", PAPER);
+
+            makeMove(gameId, "player1", PAPER);
+            makeMove(gameId, "player2", ROCK).then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
+
+        @Test
+        @DisplayName("until game is ended when projections are updated asynchronously")
+        void example_of_full_game_with_tracking_projections() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).projectionProcessor(ProcessorType.TRACKING)).start();
+            UUID gameId = UUID.randomUUID();
+            startGame(gameId).then().
+                    statusCode(200).
+                    body("state", equalTo(stateOf(JOINABLE)));
+
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS).then().
+                    statusCode(200).
+                    body("state", equalTo(stateOf(STARTED)));
+
+            makeMove(gameId, "player1", PAPER);
+            makeMove(gameId, "player2", ROCK).then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
+
+        @Test
+        @DisplayName("until game is ended when games are cached, after which the game is evicted from the cache")
+        void example_of_full_game_with_game_cache() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).gameCacheSize(10)).start();
+            UUID gameId = UUID.randomUUID();
+            startGame(gameId);
+
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+
+            makeMove(gameId, "player1", PAPER);
+            makeMove(gameId, "player2", ROCK).then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+
+            given().
+                    basePath("/").
+            when().
+                    get("/metrics").
+            then().
+                    statusCode(200).
+                    body("gauges.'cache.size{cache=game}'", equalTo(0));
+        }
+
+        @Test
+        @DisplayName("until game is ended when commands are handed over from the request threads to threads of their own")
+        void example_of_full_game_with_async_http_mode() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).httpMode(HttpMode.ASYNC).asyncCommandThreads(2)).start();
+            UUID gameId = UUID.randomUUID();
+            startGame(gameId);
+
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+
+            makeMove(gameId, "player1", PAPER);
+            makeMove(gameId, "player2", ROCK).then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
+
+        @Test
+        @DisplayName("until game is ended when commands are handled by the disruptor command bus")
+        void example_of_full_game_with_disruptor_command_bus() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).commandBus(CommandBusType.DISRUPTOR)).start();
+            UUID gameId = UUID.randomUUID();
+            startGame(gameId);
+
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", ROCK);
+
+            makeMove(gameId, "player1", SCISSORS);
+            makeMove(gameId, "player2", PAPER);
+
+            makeMove(gameId, "player1", PAPER);
+            makeMove(gameId, "player2", ROCK).then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
     }
 
     @Nested
@@ -250,6 +394,61 @@ class GameHttpApiTest {
                     statusCode(200).
                     body("collect { it.gameId}", containsInAnyOrder("game2", "game3", "game4"));
         }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games with a limit returns pages of games ordered by creation date")
+        void when_limit_query_parameter_is_specified_then_games_are_returned_in_pages() {
+            startGame("game1");
+            startGame("game2");
+            startGame("game3");
+
+            String cursor =
+                    given().
+                            queryParam("limit", 2).
+                    when().
+                            get("/").
+                    then().
+                            statusCode(200).
+                            header("X-Next-Cursor", notNullValue()).
+                            body("gameId", contains("game1", "game2")).
+                    extract().
+                            header("X-Next-Cursor");
+
+            given().
+                    queryParam("limit", 2).
+                    queryParam("cursor", cursor).
+            when().
+                    get("/").
+            then().
+                    statusCode(200).
+                    header("X-Next-Cursor", nullValue()).
+                    body("gameId", contains("game3"));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games accepting application/x-ndjson streams one game per line")
+        void when_ndjson_is_accepted_then_games_are_streamed_as_newline_delimited_json() {
+            startGame("game1");
+            startGame("game2");
+            startGame("game3");
+            makeMove("game3", "player1", ROCK);
+            makeMove("game3", "player2", ROCK);
+
+            String ndjson =
+                    given().
+                            accept("application/x-ndjson").
+                            queryParam("state", "joinable").
+                    when().
+                            get("/").
+                    then().
+                            statusCode(200).
+                            contentType("application/x-ndjson").
+                    extract().
+                            asString();
+
+            assertThat(ndjson, endsWith("\n"));
+            assertThat(Stream.of(ndjson.split("\n")).map(game -> JsonPath.from(game).getString("gameId")).collect(Collectors.toList()), contains("game1", "game2"));
+        }
     }
 
     @Nested
@@ -279,6 +478,199 @@ class GameHttpApiTest {
                     );
         }
 
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId and game is ended and archived")
+        void game_is_retrievable_when_archived() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).maxEndedGames(1)).start();
+            for (String gameId : new String[]{"game1", "game2"}) {
+                startGame(gameId);
+                makeMove(gameId, "player1", ROCK);
+                makeMove(gameId, "player2", SCISSORS);
+                makeMove(gameId, "player1", ROCK);
+                makeMove(gameId, "player2", SCISSORS);
+            }
+
+            given().
+                    queryParam("state", stateOf(ENDED)).
+            when().
+                    get("/").
+            then().
+                    statusCode(200).
+                    body("collect { it.gameId}", contains("game2"));
+
+            when().
+                    get("/{gameId}", "game1").
+            then().
+                    statusCode(200).
+                    body(
+                            "gameId", equalTo("game1"),
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games keeps exactly the max number of ended games when only a max number is set")
+        void max_number_of_ended_games_are_kept() {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).maxEndedGames(2)).start();
+            for (String gameId : new String[]{"game1", "game2", "game3"}) {
+                startGame(gameId);
+                makeMove(gameId, "player1", ROCK);
+                makeMove(gameId, "player2", SCISSORS);
+                makeMove(gameId, "player1", ROCK);
+                makeMove(gameId, "player2", SCISSORS);
+            }
+
+            given().
+                    queryParam("state", stateOf(ENDED)).
+            when().
+                    get("/").
+            then().
+                    statusCode(200).
+                    body("collect { it.gameId}", containsInAnyOrder("game2", "game3"));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games doesn't list ended games older than the max age even if no other game ends")
+        void ended_games_older_than_max_age_are_archived() throws InterruptedException {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).endedGamesMaxAge(100)).start();
+            String gameId = "game1";
+            startGame(gameId);
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+
+            // Archived by the periodic sweep, since no game ends after the max age has passed
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!given().queryParam("state", stateOf(ENDED)).when().get("/").jsonPath().getList("").isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            given().
+                    queryParam("state", stateOf(ENDED)).
+            when().
+                    get("/").
+            then().
+                    statusCode(200).
+                    body("", empty());
+
+            when().
+                    get("/{gameId}", gameId).
+            then().
+                    statusCode(200).
+                    body("state", equalTo(stateOf(ENDED)));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId returns 304 if the game hasn't changed since the ETag was received")
+        void game_is_not_modified_when_etag_matches() {
+            String gameId = "game1";
+            startGame(gameId);
+            String etag =
+                    when().
+                            get("/{gameId}", gameId).
+                    then().
+                            statusCode(200).
+                            header("ETag", notNullValue()).
+                    extract().
+                            header("ETag");
+
+            given().header("If-None-Match", etag).when().get("/{gameId}", gameId).then().statusCode(304);
+
+            makeMove(gameId, "player1", ROCK);
+
+            given().
+                    header("If-None-Match", etag).
+            when().
+                    get("/{gameId}", gameId).
+            then().
+                    statusCode(200).
+                    header("ETag", not(equalTo(etag))).
+                    body("player1", equalTo("player1"));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId/poll returns at once if the game is newer than the version")
+        void long_poll_returns_at_once_when_game_is_newer() {
+            String gameId = "game1";
+            startGame(gameId);
+
+            given().
+                    queryParam("afterVersion", -1).
+            when().
+                    get("/{gameId}/poll", gameId).
+            then().
+                    statusCode(200).
+                    header("ETag", equalTo("\"0\"")).
+                    body("gameId", equalTo(gameId));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId/poll waits until the game has changed")
+        void long_poll_waits_until_game_has_changed() throws Exception {
+            String gameId = "game1";
+            startGame(gameId);
+
+            CompletableFuture<Response> poll = CompletableFuture.supplyAsync(() -> given().queryParam("afterVersion", 0).when().get("/{gameId}/poll", gameId));
+            Thread.sleep(500);
+            assertThat(poll.isDone(), is(false));
+
+            makeMove(gameId, "player1", ROCK);
+
+            poll.get(5, TimeUnit.SECONDS).then().
+                    statusCode(200).
+                    header("ETag", not(equalTo("\"0\""))).
+                    body("player1", equalTo("player1"));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId/poll returns 204 if the game hasn't changed before the timeout")
+        void long_poll_returns_204_on_timeout() {
+            String gameId = "game1";
+            startGame(gameId);
+
+            given().
+                    queryParam("afterVersion", 0).
+                    queryParam("timeout", 200).
+            when().
+                    get("/{gameId}/poll", gameId).
+            then().
+                    statusCode(204).
+                    header("ETag", equalTo("\"0\""));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId/poll with an If-None-Match header returns 304 if the game hasn't changed before the timeout")
+        void long_poll_with_etag_returns_304_on_timeout() {
+            String gameId = "game1";
+            startGame(gameId);
+
+            given().
+                    header("If-None-Match", "\"0\"").
+                    queryParam("timeout", 200).
+            when().
+                    get("/{gameId}/poll", gameId).
+            then().
+                    statusCode(304).
+                    header("ETag", equalTo("\"0\""));
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/games/:gameId/poll returns 404 at once if the game doesn't exist")
+        void long_poll_of_unknown_game_returns_404() {
+            given().
+                    queryParam("afterVersion", 0).
+            when().
+                    get("/{gameId}/poll", "unknown").
+            then().
+                    statusCode(404).
+                    time(lessThan(5000L));
+        }
+
         @Test
         @DisplayName("when issuing GET to /api/games/:gameId and game is started")
         void game_is_retrievable_when_started() {
@@ -300,6 +692,320 @@ class GameHttpApiTest {
         }
     }
 
+    @Nested
+    @DisplayName("player statistics are retrievable")
+    class PlayerStatistics {
+
+        @Test
+        @DisplayName("when issuing GET to /api/players/:playerId after the player has played games")
+        void when_get_to_api_players_player_id() {
+            playGame("game1", "player2", ROCK, SCISSORS);
+            playGame("game2", "player3", ROCK, PAPER);
+
+            given().
+                    basePath("/api").
+            when().
+                    get("/players/{playerId}", "player1").
+            then().
+                    statusCode(200).
+                    body(
+                            "playerId", equalTo("player1"),
+                            "gamesPlayed", equalTo(2),
+                            "gamesWon", equalTo(1),
+                            "gamesLost", equalTo(1),
+                            "gamesTied", equalTo(0),
+                            "roundsWon", equalTo(2),
+                            "roundsLost", equalTo(2),
+                            "moves.rock", equalTo(4),
+                            "moves.paper", equalTo(0)
+                    );
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/players/:playerId for a player that hasn't played returns 404")
+        void when_get_to_api_players_player_id_for_unknown_player() {
+            given().
+                    basePath("/api").
+            when().
+                    get("/players/{playerId}", "player1").
+            then().
+                    statusCode(404);
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/leaderboard returns the players with the most wins and fewest losses first")
+        void when_get_to_api_leaderboard() {
+            playGame("game1", "player2", ROCK, SCISSORS);
+            playGame("game2", "player3", ROCK, PAPER);
+
+            given().
+                    basePath("/api").
+                    queryParam("limit", 2).
+            when().
+                    get("/leaderboard").
+            then().
+                    statusCode(200).
+                    body(
+                            "playerId", contains("player3", "player1"),
+                            "gamesWon", contains(1, 1)
+                    );
+        }
+
+        @Test
+        @DisplayName("when issuing GET to /api/leaderboard returns 304 if the leaderboard hasn't changed since the autogenerated ETag was received")
+        void leaderboard_is_not_modified_when_etag_matches() {
+            playGame("game1", "player2", ROCK, SCISSORS);
+            String etag =
+                    given().
+                            basePath("/api").
+                    when().
+                            get("/leaderboard").
+                    then().
+                            statusCode(200).
+                            header("ETag", notNullValue()).
+                    extract().
+                            header("ETag");
+
+            given().basePath("/api").header("If-None-Match", etag).when().get("/leaderboard").then().statusCode(304);
+        }
+
+        // Plays a game of player1 against an opponent that is decided after two rounds with the same moves
+        private void playGame(String gameId, String opponent, Move player1Move, Move opponentMove) {
+            startGame(gameId);
+            for (int round = 0; round < 2; round++) {
+                makeMove(gameId, "player1", player1Move).then().statusCode(200);
+                makeMove(gameId, opponent, opponentMove).then().statusCode(200);
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("moves can be made in batches")
+    class BatchOfMoves {
+
+        @Test
+        @DisplayName("when issuing POST to /api/moves with moves of several games")
+        void when_post_to_api_moves() {
+            startGame("game1");
+            startGame("game2");
+
+            given().
+                    basePath("/api").
+                    contentType("application/json").
+                    body(asList(
+                            move("game1", "player1", "rock"),
+                            move("game2", "player1", "paper"),
+                            move("game1", "player2", "scissors"),
+                            move("game1", "player1", "rock"),
+                            move("game1", "player2", "scissors"),
+                            move("game2", "player2", "lizard"))).
+            when().
+                    post("/moves").
+            then().
+                    statusCode(200).
+                    body(
+                            "gameId", contains("game1", "game2", "game1", "game1", "game1", "game2"),
+                            "version", contains(notNullValue(), notNullValue(), notNullValue(), notNullValue(), notNullValue(), nullValue()),
+                            "error[5]", notNullValue()
+                    );
+
+            when().
+                    get("/{gameId}", "game1").
+            then().
+                    statusCode(200).
+                    body(
+                            "winner", equalTo("player1"),
+                            "state", equalTo(stateOf(ENDED))
+                    );
+        }
+
+        private Map<String, String> move(String gameId, String player, String move) {
+            Map<String, String> entry = new HashMap<>();
+            entry.put("gameId", gameId);
+            entry.put("player", player);
+            entry.put("move", move);
+            return entry;
+        }
+    }
+
+    @Nested
+    @DisplayName("commands time out")
+    class ProjectionTimeout {
+
+        @Test
+        @DisplayName("when issuing PUT to /api/games/:gameId and the projection doesn't reach the version of the game in time")
+        void responds_503_when_projection_does_not_catch_up() throws InterruptedException {
+            // Commands succeed but their events never reach the projection
+            GameApplicationService gameApplicationService = new GameApplicationService(command -> CompletableFuture.completedFuture(1L), 3, new se.haleby.rps.infrastructure.metrics.Metrics());
+            GameInfoProjection gameInfoProjection = new GameInfoProjection();
+            GameApi gameApi = new GameApi(0, 16, Location.CLASSPATH, Collections.emptyList(), 100, Duration.ofMillis(100), gameApplicationService,
+                    gameInfoProjection, new PlayerStatsProjection(), new se.haleby.rps.infrastructure.metrics.Metrics());
+            gameApi.start();
+            try {
+                given().
+                        port(gameApi.port()).
+                        header("player", "player1").
+                when().
+                        put("/{gameId}", "game1").
+                then().
+                        statusCode(503).
+                        body(containsString("didn't reach version"));
+
+                // The waiter is removed when it times out, possibly just after the response has been written
+                long deadline = System.currentTimeMillis() + 5000;
+                while (gameInfoProjection.versionWaiterCount() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(gameInfoProjection.versionWaiterCount(), is(0));
+            } finally {
+                gameApi.stop();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("game updates are pushed to web socket clients")
+    class GameUpdates {
+        private WebSocketClient webSocketClient;
+
+        @BeforeEach
+        void startWebSocketClient() throws Exception {
+            webSocketClient = new WebSocketClient();
+            webSocketClient.start();
+        }
+
+        @AfterEach
+        void stopWebSocketClient() throws Exception {
+            webSocketClient.stop();
+        }
+
+        @Test
+        @DisplayName("when connecting to /api/updates with a gameId only receives updates of that game")
+        void updates_are_filtered_by_game_id() throws Exception {
+            GameUpdatesListener updates = connect("/api/updates?gameId=game1");
+
+            startGame("game2");
+            startGame("game1");
+
+            assertThat(updates.next().getList("gameId"), contains("game1"));
+            startGame("game3");
+            assertThat(updates.next(500), nullValue());
+        }
+
+        @Test
+        @DisplayName("when connecting to /api/updates with a state receives updates of games entering and leaving that state")
+        void updates_are_filtered_by_state() throws Exception {
+            GameUpdatesListener updates = connect("/api/updates?state=joinable");
+
+            startGame("game1");
+            assertThat(updates.next().getList("state"), contains(stateOf(JOINABLE)));
+
+            makeMove("game1", "player1", ROCK);
+            makeMove("game1", "player2", SCISSORS);
+            JsonPath started = updates.nextMatching(update -> update.getList("state").contains(stateOf(STARTED)));
+            assertThat(started.getList("gameId"), contains("game1"));
+        }
+
+        @Test
+        @DisplayName("when connecting to /api/updates doesn't receive updates of events that don't change what is shown of a game")
+        void updates_are_not_pushed_for_unchanged_games() throws Exception {
+            GameUpdatesListener updates = connect("/api/updates?gameId=game1");
+
+            startGame("game1");
+            makeMove("game1", "player1", ROCK);
+            makeMove("game1", "player2", SCISSORS);
+            updates.nextMatching(update -> update.getList("state").contains(stateOf(STARTED)));
+
+            // The first move of the second round only changes the version of the game
+            makeMove("game1", "player1", ROCK).then().statusCode(200);
+            assertThat(updates.next(500), nullValue());
+        }
+
+        @Test
+        @DisplayName("when connecting to /api/updates receives the changes of a game within an interval as a single update")
+        void updates_are_coalesced() throws Exception {
+            gameServer.stop();
+            gameServer = new GameServer(CmdArgs.with().port(8080).updateInterval(1000)).start();
+            GameUpdatesListener updates = connect("/api/updates");
+
+            String gameId = "game1";
+            startGame(gameId);
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+            makeMove(gameId, "player1", ROCK);
+            makeMove(gameId, "player2", SCISSORS);
+
+            List<JsonPath> received = new ArrayList<>();
+            JsonPath update;
+            do {
+                update = updates.next();
+                received.add(update);
+            } while (!update.getList("state").contains(stateOf(ENDED)));
+            // Five requests changing the game are made within at most two intervals
+            assertThat(received.size(), lessThanOrEqualTo(2));
+            assertThat(update.getList("gameId"), contains(gameId));
+        }
+
+        private GameUpdatesListener connect(String path) throws Exception {
+            GameUpdatesListener listener = new GameUpdatesListener();
+            webSocketClient.connect(listener, URI.create("ws://localhost:8080" + path)).get(5, TimeUnit.SECONDS);
+            return listener;
+        }
+    }
+
+    @WebSocket
+    public static class GameUpdatesListener {
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        @OnWebSocketMessage
+        public void onMessage(String message) {
+            messages.add(message);
+        }
+
+        JsonPath next() throws InterruptedException {
+            JsonPath update = next(5000);
+            assertThat("No update received", update, notNullValue());
+            return update;
+        }
+
+        JsonPath next(long timeoutMillis) throws InterruptedException {
+            String message = messages.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            return message == null ? null : JsonPath.from(message);
+        }
+
+        JsonPath nextMatching(Predicate<JsonPath> predicate) throws InterruptedException {
+            JsonPath update;
+            do {
+                update = next();
+            } while (!predicate.test(update));
+            return update;
+        }
+    }
+
+    @Nested
+    @DisplayName("metrics are exposed")
+    class Metrics {
+
+        @Test
+        @DisplayName("when issuing GET to /metrics after a game has been started")
+        void when_get_to_metrics() {
+            startGame("game1");
+
+            given().
+                    basePath("/").
+            when().
+                    get("/metrics").
+            then().
+                    statusCode(200).
+                    body(
+                            "timers.'http.server.requests{method=PUT,route=/api/games/:gameId}'.count", equalTo(1),
+                            "timers.'commands.dispatch{command=CreateGame}'.count", equalTo(1),
+                            "timers.'projection.events{processor=game-info,event=GameCreated}'.count", equalTo(1),
+                            "gauges.'games{state=joinable}'", equalTo(1)
+                    );
+        }
+    }
+
     // Test configuration and helpers
 
     @BeforeAll